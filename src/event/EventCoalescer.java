@@ -0,0 +1,270 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package event;
+
+import java.util.*;
+
+import mobility.MobileNode;
+
+/**
+ * EventCoalescer merges consecutive events of a node into a single event before they are passed
+ * to the next sink. Consecutive MOVE events are merged if the merged movement with constant velocity
+ * deviates at most by the tolerance from the positions at the boundaries of the original events.
+ * Consecutive PAUSE events are merged if their positions differ at most by the tolerance.
+ * 
+ * The last event of each node is kept back until an event which cannot be merged arrives, 
+ * until it can no longer be extended within the maximum duration of a merged event (see release()) 
+ * or until the coalescer is flushed. The duration and the number of boundaries of a merged event are 
+ * limited, so the events of a node which moves straight or pauses for a long time are not kept back 
+ * for an unlimited time.
+ * @author psommer
+ *
+ */
+public class EventCoalescer implements EventSink {
+
+	/**
+	 * Event of a node which is kept back for merging, including the boundaries of the merged events.
+	 * @author psommer
+	 *
+	 */
+	class PendingEvent {
+		/** merged event (the start time does not change while events are merged) */
+		Event event = null;
+		/** true if the event has been passed to the sink */
+		boolean released = false;
+		/** number of boundaries between the merged events */
+		int count = 0;
+		/** time of the boundaries between the merged events */
+		double[] times = new double[8];
+		/** x-coordinates of the node at the boundaries between the merged events */
+		double[] xs = new double[8];
+		/** y-coordinates of the node at the boundaries between the merged events */
+		double[] ys = new double[8];
+		
+		/**
+		 * Adds a boundary between two merged events
+		 * @param time Time
+		 * @param x X-coordinate of the node
+		 * @param y Y-coordinate of the node
+		 */
+		void addBoundary(double time, double x, double y) {
+			if (count==times.length) {
+				times = Arrays.copyOf(times, 2*count);
+				xs = Arrays.copyOf(xs, 2*count);
+				ys = Arrays.copyOf(ys, 2*count);
+			}
+			times[count] = time;
+			xs[count] = x;
+			ys[count] = y;
+			count++;
+		}
+	}
+	
+	/** maximum time difference between the end of an event and the start of the next event */
+	static final double timeEpsilon = 1e-6;
+	/** maximum number of boundaries between the events merged into a single move */
+	static final int maxBoundaries = 64;
+	
+	/** maximum position deviation of the merged events */
+	double tolerance = 0;
+	/** maximum duration of a merged event */
+	double maxDuration = 0;
+	/** sink for the merged events */
+	EventSink sink = null;
+	/** events kept back for merging (for each node) */
+	HashMap<MobileNode, PendingEvent> pendingEvents = new HashMap<MobileNode, PendingEvent>();
+	/** events kept back for merging ordered by their start time (may contain events which have already been released) */
+	PriorityQueue<PendingEvent> startTimes = new PriorityQueue<PendingEvent>(16, new Comparator<PendingEvent>() {
+		public int compare(PendingEvent event1, PendingEvent event2) {
+			return Double.compare(event1.event.time, event2.event.time);
+		}
+	});
+	
+	
+	/**
+	 * Creates a new EventCoalescer
+	 * @param tolerance Maximum position deviation of the merged events
+	 * @param maxDuration Maximum duration of a merged event
+	 * @param sink Sink for the merged events
+	 */
+	public EventCoalescer(double tolerance, double maxDuration, EventSink sink) {
+		this.tolerance = tolerance;
+		this.maxDuration = maxDuration;
+		this.sink = sink;
+	}
+	
+	public void addEvent(Event event) {
+		
+		PendingEvent pending = pendingEvents.get(event.node);
+		
+		if (pending!=null) {
+			if (merge(pending, event)) return;
+			
+			// event cannot be merged, pass the pending event to the sink
+			release(pending);
+		}
+		
+		if (event.type==Event.MOVE || event.type==Event.PAUSE) {
+			pending = new PendingEvent();
+			pending.event = event;
+			pendingEvents.put(event.node, pending);
+			startTimes.add(pending);
+		} else {
+			sink.addEvent(event);
+		}
+	}
+	
+	/**
+	 * Passes a pending event to the sink
+	 * @param pending Pending event
+	 */
+	void release(PendingEvent pending) {
+		sink.addEvent(pending.event);
+		pending.released = true;
+		pendingEvents.remove(pending.event.node);
+	}
+	
+	/**
+	 * Passes all pending events to the sink which cannot be extended anymore, i.e. all events starting 
+	 * more than the maximum duration of a merged event before the given time.
+	 * @param time Earliest start time of the next events of all nodes
+	 */
+	public void release(double time) {
+		while (!startTimes.isEmpty()) {
+			PendingEvent pending = startTimes.peek();
+			if (!pending.released && pending.event.time + maxDuration>=time) break;
+			startTimes.poll();
+			if (!pending.released) release(pending);
+		}
+	}
+	
+	/**
+	 * Tries to merge an event with the pending event of the same node
+	 * @param pending Pending event
+	 * @param event Next event of the node
+	 * @return True if the event has been merged
+	 */
+	boolean merge(PendingEvent pending, Event event) {
+		
+		Event last = pending.event;
+		if (event.type!=last.type || Math.abs(last.time + last.duration - event.time)>timeEpsilon) return false;
+		if (event.time + event.duration - last.time>maxDuration) return false;
+		
+		if (event.type==Event.PAUSE) {
+			
+			if (distance(last.x, last.y, event.x, event.y)>tolerance) return false;
+			pending.event = new Pause(last.node, last.time, last.duration + event.duration, last.x, last.y);
+			return true;
+			
+		} else if (event.type==Event.MOVE) {
+			
+			Move lastMove = (Move) last;
+			Move move = (Move) event;
+			
+			if (distance(lastMove.moveToX, lastMove.moveToY, move.x, move.y)>tolerance || pending.count==maxBoundaries) return false;
+			
+			// all boundaries must be close to the merged movement with constant velocity
+			double duration = move.time + move.duration - lastMove.time;
+			if (duration<=0) return false;
+			
+			if (!isOnMove(lastMove, move, duration, event.time, lastMove.moveToX, lastMove.moveToY)) return false;
+			for (int i=0; i<pending.count; i++) {
+				if (!isOnMove(lastMove, move, duration, pending.times[i], pending.xs[i], pending.ys[i])) return false;
+			}
+			
+			pending.addBoundary(event.time, lastMove.moveToX, lastMove.moveToY);
+			
+			double distance = distance(lastMove.x, lastMove.y, move.moveToX, move.moveToY);
+			double velocity = (distance>0) ? distance/duration : lastMove.velocity;
+			pending.event = new Move(last.node, lastMove.time, lastMove.x, lastMove.y, move.moveToX, move.moveToY, velocity, duration);
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Checks if a position is close to the movement from the start of the first event to the end of the second event
+	 * @param first First movement
+	 * @param second Second movement
+	 * @param duration Duration of the merged movement
+	 * @param time Time of the position
+	 * @param x X-coordinate of the position
+	 * @param y Y-coordinate of the position
+	 * @return True if the distance to the merged movement at the given time is below the tolerance
+	 */
+	boolean isOnMove(Move first, Move second, double duration, double time, double x, double y) {
+		double fraction = (time - first.time)/duration;
+		double mergedX = first.x + fraction*(second.moveToX - first.x);
+		double mergedY = first.y + fraction*(second.moveToY - first.y);
+		return distance(mergedX, mergedY, x, y)<=tolerance;
+	}
+	
+	/**
+	 * Returns the distance between two points
+	 */
+	static double distance(double x1, double y1, double x2, double y2) {
+		return Math.sqrt((x1-x2)*(x1-x2) + (y1-y2)*(y1-y2));
+	}
+	
+	/**
+	 * Returns the earliest start time of all events which are kept back
+	 * @return Start time or positive infinity if no events are kept back
+	 */
+	public double getEarliestTime() {
+		// remove released events from the head of the queue
+		while (!startTimes.isEmpty() && startTimes.peek().released) {
+			startTimes.poll();
+		}
+		return startTimes.isEmpty() ? Double.POSITIVE_INFINITY : startTimes.peek().event.time;
+	}
+	
+	/**
+	 * Passes all events which are kept back to the sink (ordered by node identifier)
+	 */
+	public void flush() {
+		ArrayList<PendingEvent> events = new ArrayList<PendingEvent>(pendingEvents.values());
+		Collections.sort(events, new Comparator<PendingEvent>() {
+			public int compare(PendingEvent event1, PendingEvent event2) {
+				return event1.event.node.id - event2.event.node.id;
+			}
+		});
+		
+		Iterator<PendingEvent> it = events.iterator();
+		while (it.hasNext()) {
+			sink.addEvent(it.next().event);
+		}
+		pendingEvents.clear();
+		startTimes.clear();
+	}
+	
+}
@@ -0,0 +1,299 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package event;
+
+/**
+ * EventStore is a compact storage for a large number of events. The attributes of the events
+ * are kept in growable arrays of primitive types (one array per attribute) instead of event objects.
+ * Attributes which can be derived from the stored attributes (direction and distance of a movement)
+ * are calculated on request.
+ * Events are identified by their index in the order they have been added to the store.
+ * @author psommer
+ *
+ */
+public class EventStore {
+
+	/** number of events in the store */
+	int size = 0;
+	
+	/** node identifiers */
+	int[] nodeIds = null;
+	/** event types */
+	byte[] types = null;
+	/** start times */
+	double[] times = null;
+	/** durations */
+	double[] durations = null;
+	/** x-coordinates of the start positions */
+	double[] x = null;
+	/** y-coordinates of the start positions */
+	double[] y = null;
+	/** x-coordinates of the end positions */
+	double[] moveToX = null;
+	/** y-coordinates of the end positions */
+	double[] moveToY = null;
+	/** velocities */
+	double[] velocities = null;
+	
+	/**
+	 * Constructs an empty event store
+	 */
+	public EventStore() {
+		this(1024);
+	}
+	
+	/**
+	 * Constructs an empty event store with the given initial capacity
+	 * @param capacity Initial number of events which can be stored without growing the arrays
+	 */
+	public EventStore(int capacity) {
+		if (capacity<1) capacity = 1;
+		nodeIds = new int[capacity];
+		types = new byte[capacity];
+		times = new double[capacity];
+		durations = new double[capacity];
+		x = new double[capacity];
+		y = new double[capacity];
+		moveToX = new double[capacity];
+		moveToY = new double[capacity];
+		velocities = new double[capacity];
+	}
+	
+	/**
+	 * Adds an event to the store. Events which are not of type MOVE end at their start position.
+	 * @param event Event
+	 * @return Index of the stored event
+	 */
+	public int add(Event event) {
+		if (event.type==Event.MOVE) {
+			Move move = (Move) event;
+			return add(event.node.id, event.type, event.time, event.duration, event.x, event.y, move.moveToX, move.moveToY, move.velocity);
+		} else {
+			return add(event.node.id, event.type, event.time, event.duration, event.x, event.y, event.x, event.y, 0);
+		}
+	}
+	
+	/**
+	 * Adds an event to the store
+	 * @param nodeId Identifier of the node related to the event
+	 * @param type Event type
+	 * @param time Event start time
+	 * @param duration Event duration
+	 * @param x X-coordinate of the start position
+	 * @param y Y-coordinate of the start position
+	 * @param moveToX X-coordinate of the end position
+	 * @param moveToY Y-coordinate of the end position
+	 * @param velocity Velocity of the node
+	 * @return Index of the stored event
+	 */
+	public int add(int nodeId, int type, double time, double duration, double x, double y, double moveToX, double moveToY, double velocity) {
+		
+		if (size==times.length) grow();
+		
+		nodeIds[size] = nodeId;
+		types[size] = (byte) type;
+		times[size] = time;
+		durations[size] = duration;
+		this.x[size] = x;
+		this.y[size] = y;
+		this.moveToX[size] = moveToX;
+		this.moveToY[size] = moveToY;
+		velocities[size] = velocity;
+		
+		return size++;
+	}
+	
+	/**
+	 * Doubles the capacity of all arrays
+	 */
+	void grow() {
+		int capacity = 2*times.length;
+		
+		int[] nodeIdsNew = new int[capacity];
+		System.arraycopy(nodeIds, 0, nodeIdsNew, 0, size);
+		nodeIds = nodeIdsNew;
+		
+		byte[] typesNew = new byte[capacity];
+		System.arraycopy(types, 0, typesNew, 0, size);
+		types = typesNew;
+		
+		times = grow(times, capacity);
+		durations = grow(durations, capacity);
+		x = grow(x, capacity);
+		y = grow(y, capacity);
+		moveToX = grow(moveToX, capacity);
+		moveToY = grow(moveToY, capacity);
+		velocities = grow(velocities, capacity);
+	}
+	
+	/**
+	 * Copies the values of the given array into a new array with the given capacity
+	 */
+	double[] grow(double[] values, int capacity) {
+		double[] valuesNew = new double[capacity];
+		System.arraycopy(values, 0, valuesNew, 0, size);
+		return valuesNew;
+	}
+	
+	/**
+	 * Removes all events from the store
+	 */
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Returns the number of events in the store
+	 * @return Number of events
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/** Returns the identifier of the node related to the event */
+	public int getNodeId(int index) {
+		return nodeIds[index];
+	}
+	
+	/** Returns the type of the event */
+	public int getType(int index) {
+		return types[index];
+	}
+	
+	/** Returns the start time of the event */
+	public double getTime(int index) {
+		return times[index];
+	}
+	
+	/** Returns the duration of the event */
+	public double getDuration(int index) {
+		return durations[index];
+	}
+	
+	/** Returns the x-coordinate of the node position at the event start time */
+	public double getX(int index) {
+		return x[index];
+	}
+	
+	/** Returns the y-coordinate of the node position at the event start time */
+	public double getY(int index) {
+		return y[index];
+	}
+	
+	/** Returns the x-coordinate of the node position at the event end time */
+	public double getMoveToX(int index) {
+		return moveToX[index];
+	}
+	
+	/** Returns the y-coordinate of the node position at the event end time */
+	public double getMoveToY(int index) {
+		return moveToY[index];
+	}
+	
+	/** Returns the velocity of the node during the event */
+	public double getVelocity(int index) {
+		return velocities[index];
+	}
+	
+	/** Returns the direction of the movement (rad) */
+	public double getDirection(int index) {
+		return Math.atan2(moveToY[index]-y[index], moveToX[index]-x[index]);
+	}
+	
+	/** Returns the distance between the start and the end position */
+	public double getDistance(int index) {
+		double dx = moveToX[index]-x[index];
+		double dy = moveToY[index]-y[index];
+		return Math.sqrt(dx*dx + dy*dy);
+	}
+	
+	/**
+	 * Returns the indices of all events ordered by the start time of the events.
+	 * The sort is stable, i.e. events with the same start time keep the order they have been added.
+	 * @return Array with event indices
+	 */
+	public int[] sortByStartTime() {
+		return sort(false);
+	}
+	
+	/**
+	 * Returns the indices of all events ordered first by the node identifier and then 
+	 * by the start time of the events. The sort is stable.
+	 * @return Array with event indices
+	 */
+	public int[] sortByNodeIdByStartTime() {
+		return sort(true);
+	}
+	
+	/**
+	 * Sorts the event indices with a (stable) merge sort
+	 * @param byNodeId Sort by node identifier first
+	 * @return Array with sorted event indices
+	 */
+	int[] sort(boolean byNodeId) {
+		
+		int[] order = new int[size];
+		int[] buffer = new int[size];
+		for (int i=0; i<size; i++) order[i] = i;
+		
+		// bottom-up merge sort, runs of the given width are merged into the buffer
+		for (int width=1; width<size; width*=2) {
+			for (int start=0; start<size; start+=2*width) {
+				int middle = Math.min(start+width, size);
+				int end = Math.min(start+2*width, size);
+				int left = start, right = middle, target = start;
+				while (left<middle && right<end) {
+					if (compare(order[right], order[left], byNodeId)<0) buffer[target++] = order[right++];
+					else buffer[target++] = order[left++];
+				}
+				while (left<middle) buffer[target++] = order[left++];
+				while (right<end) buffer[target++] = order[right++];
+			}
+			int[] temp = order;
+			order = buffer;
+			buffer = temp;
+		}
+		
+		return order;
+	}
+	
+	/**
+	 * Compares two events by the node identifier (optional) and the start time
+	 */
+	int compare(int index1, int index2, boolean byNodeId) {
+		if (byNodeId && nodeIds[index1]!=nodeIds[index2]) {
+			return nodeIds[index1] < nodeIds[index2] ? -1 : 1;
+		}
+		return Double.compare(times[index1], times[index2]);
+	}
+	
+}
@@ -48,10 +48,6 @@ public class Move extends Event {
 	public double moveToY = 0;
 	/** velocity of the movement */
 	public double velocity = 0;
-	/** direction of the movement (rad) */
-	public double direction = 0;
-	/** distance of between start and end point */
-	public double distance = 0;
 	
 	/**
 	 * Constructs a MOVE event
@@ -71,9 +67,7 @@ public class Move extends Event {
 		moveToX = x2;
 		moveToY = y2;
 		this.velocity = velocity;
-		direction = Math.atan2(moveToY-y, moveToX-x);
-		distance = Math.sqrt((x1-x2)*(x1-x2) + (y1-y2)*(y1-y2));
-		duration = distance/velocity;
+		duration = getDistance()/velocity;
 		type = Event.MOVE;
 	}
 	
@@ -96,12 +90,25 @@ public class Move extends Event {
 		moveToX = x2;
 		moveToY = y2;
 		this.velocity = velocity;
-		direction = Math.atan2(moveToY-y, moveToX-x);
-		distance = Math.sqrt((x1-x2)*(x1-x2) + (y1-y2)*(y1-y2));
 		this.duration = duration;
 		type = Event.MOVE;
 	}
 	
+	/**
+	 * Returns the direction of the movement
+	 * @return Direction (rad)
+	 */
+	public double getDirection() {
+		return Math.atan2(moveToY-y, moveToX-x);
+	}
+	
+	/**
+	 * Returns the distance between start and end point
+	 * @return Distance
+	 */
+	public double getDistance() {
+		return Math.sqrt((x-moveToX)*(x-moveToX) + (y-moveToY)*(y-moveToY));
+	}
 		
 	public String toString() {
 		return node.id + " time=" + time + ", duration=" + duration + " move from (" + x + "," + y + ") to (" + moveToX + "," + moveToY + ")";
@@ -98,8 +98,8 @@ public class GUI extends Module {
 				while (it.hasNext()) {
 
 					MobileNode node = it.next();
-					int x = (int)Math.floor(node.x/Simulator.size*windowSize);
-					int y = (int)Math.floor(node.y/Simulator.size*windowSize);
+					int x = (int)Math.floor(node.x/context.size*windowSize);
+					int y = (int)Math.floor(node.y/context.size*windowSize);
 					
 					if (x>=0 && x<=windowSize && y>=0 && y<=windowSize) {
 						// draw node
@@ -116,7 +116,8 @@ public class GUI extends Module {
 	    }
 	}
 	
-	public GUI() {
+	public GUI(SimulationContext context) {
+		super(context);
 		name = "GUI";
 	}
 	
@@ -150,15 +151,15 @@ public class GUI extends Module {
         al = new ActionListener() {
             public void actionPerformed( ActionEvent e ) {
              // take snapshot
-             PDFOutput pdf = new PDFOutput(new File(Simulator.outputDirectory + "/snapshot.pdf"), Simulator.size);
+             PDFOutput pdf = new PDFOutput(new File(context.outputDirectory + "/snapshot.pdf"), context.size);
              Graph graph = new Graph();
              graph.setNodes(new LinkedList<GraphNode>(nodes));
              
              pdf.drawGraph(graph);
-             pdf.drawLine(new Line(0, 0, 0, Simulator.size), Color.black, 1);
-     		 pdf.drawLine(new Line(0, Simulator.size, Simulator.size, Simulator.size), Color.black, 1);
-     		 pdf.drawLine(new Line(Simulator.size, Simulator.size, Simulator.size, 0), Color.black, 1);
-     		 pdf.drawLine(new Line(Simulator.size, 0, 0, 0), Color.black, 1);
+             pdf.drawLine(new Line(0, 0, 0, context.size), Color.black, 1);
+     		 pdf.drawLine(new Line(0, context.size, context.size, context.size), Color.black, 1);
+     		 pdf.drawLine(new Line(context.size, context.size, context.size, 0), Color.black, 1);
+     		 pdf.drawLine(new Line(context.size, 0, 0, 0), Color.black, 1);
      		 pdf.close();
           };
         };
@@ -171,7 +172,7 @@ public class GUI extends Module {
         frame.setSize( windowSize + 3*windowOffset, windowSize + 6*windowOffset );
         
         // background image
-        background = Toolkit.getDefaultToolkit().getImage(Simulator.inputDirectory + "/map.png");
+        background = Toolkit.getDefaultToolkit().getImage(context.inputDirectory + "/map.png");
 		
         // start paused
         paused = true;
@@ -190,7 +191,7 @@ public class GUI extends Module {
 		
 		synchronized(monitor) {
 			edges.clear();
-			edges.addAll(Simulator.neighborhoodGraph.getEdges());
+			edges.addAll(context.neighborhoodGraph.getEdges());
 		}
 		// paint panel
 		panel.repaint();
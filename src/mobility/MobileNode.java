@@ -38,6 +38,7 @@ import java.util.*;
 import simulator.*;
 import event.*;
 import model.*;
+import probability.*;
 
 
 /**
@@ -58,6 +59,12 @@ public abstract class MobileNode extends GraphNode{
 	public RoadEdge road = null;
 	/** current speed */
 	public double speed = 0;
+	/** road whose vehicle order contains this node (maintained by the road) */
+	public RoadEdge orderedRoad = null;
+	/** next vehicle in front of this node on the same road (maintained by the road) */
+	public MobileNode frontVehicle = null;
+	/** next vehicle behind this node on the same road (maintained by the road) */
+	public MobileNode rearVehicle = null;
 	/** current direction (if moving) */
 	public double direction = 0;
 	/** list with generated events for this node */
@@ -68,6 +75,10 @@ public abstract class MobileNode extends GraphNode{
 	protected Event lastEvent = null;
 	/** end time of the last event in the queue */
 	protected double lastEventEndTime = 0;
+	/** random number generator of this node (derived from the simulation seed and the node identifier) */
+	protected RandomStream rng = null;
+	/** simulation which contains this node */
+	protected SimulationContext context = null;
 	
 	/** table of contacts for this node */
 	public Hashtable<Integer, Double> contacts = new Hashtable<Integer, Double>();
@@ -83,17 +94,23 @@ public abstract class MobileNode extends GraphNode{
 	/** time when this node left the simulation */
 	public double leaveTime = Double.POSITIVE_INFINITY;
 	
+	/** time of the next update in the event-driven mode (see NodeScheduler) */
+	double scheduledTime = Double.NaN;
+	
 	/** members used for the Dijkstra shortest path algorithm */
 	public int dijkstraCost = Integer.MAX_VALUE;
 	public boolean dijkstraVisited = false;
 	
 	/**
 	 * Constructs a new Node
+	 * @param context Simulation which contains this node
 	 * @param id unique identifier for this node. This identifier has to be unique in the simulation.
 	 */
-	public MobileNode(int id) {
+	public MobileNode(SimulationContext context, int id) {
+		this.context = context;
 		this.id = id;
-		leaveTime = Simulator.duration;
+		rng = RandomStreams.create(context.seed, RandomStreams.NODE, id);
+		leaveTime = context.duration;
 		lastEventEndTime = 0;
 	}
 	
@@ -131,7 +148,7 @@ public abstract class MobileNode extends GraphNode{
 		// update the end time of the current event
 		lastEventEndTime = event.time + event.duration;
 		// inform the simulation about this event
-		Simulator.addEvent(event);
+		context.addEvent(event);
 		
 	}
 	
@@ -152,20 +169,20 @@ public abstract class MobileNode extends GraphNode{
 		// get the first event in the list
 		Event firstEvent = events.peek();
 		
-		while (firstEvent!=null && firstEvent.time<=Simulator.time) {
+		while (firstEvent!=null && firstEvent.time<=context.time) {
 		
 			// proceed with the next event 
 			currentEvent = events.poll();
 			
 			if (currentEvent.type==Event.JOIN) {
 				// add node to the simulation
-				Simulator.addNode(currentEvent.time, this);
+				context.addNode(currentEvent.time, this);
 				participating = true;
 				joinTime = currentEvent.time;
 			} else if (currentEvent.type==Event.LEAVE) {
 				// remove node from the simulation
 				leaveTime = currentEvent.time;
-				Simulator.removeNode(currentEvent.time, this);
+				context.removeNode(currentEvent.time, this);
 				participating = false;
 				currentEvent = null;
 				
@@ -187,15 +204,15 @@ public abstract class MobileNode extends GraphNode{
 			
 			Move movement = (Move) currentEvent;
 				
-			if (Simulator.time<currentEvent.time + movement.duration) {
+			if (context.time<currentEvent.time + movement.duration) {
 				// node is moving
-				double fraction = (Simulator.time - movement.time)/movement.duration;
+				double fraction = (context.time - movement.time)/movement.duration;
 					
 				// update the current node position, velocity and direction
 				x = fraction*(movement.moveToX-movement.x) + movement.x;
 				y = fraction*(movement.moveToY-movement.y) + movement.y;
 				speed = movement.velocity;
-				direction = movement.direction;
+				direction = movement.getDirection();
 			} else {
 				// node has reached the destination
 				x = movement.moveToX;
@@ -214,19 +231,41 @@ public abstract class MobileNode extends GraphNode{
 		}
 		
 		
-		if ((currentEvent.time + currentEvent.duration)<Simulator.time) currentEvent = null;
+		if ((currentEvent.time + currentEvent.duration)<context.time) currentEvent = null;
 		
 		return true;
 	};
 	
 	
+	/**
+	 * Returns the time of the next event boundary of this node, i.e. the time when the next 
+	 * event starts or the current event ends. Until this time, next() only updates the 
+	 * interpolated node position. Subclasses which generate events in prepare() or next()
+	 * have to take these events into account.
+	 * @return Time when the node has to be updated next
+	 */
+	public double getNextUpdateTime() {
+		
+		double time = Double.POSITIVE_INFINITY;
+		
+		// start of the next event in the queue
+		Event firstEvent = events.peek();
+		if (firstEvent!=null) time = firstEvent.time;
+		
+		// the current event is released after its end time
+		if (currentEvent!=null) time = Math.min(time, Math.nextUp(currentEvent.time + currentEvent.duration));
+		
+		return time;
+	}
+	
+	
 	/**
 	 * Called to clean up.
 	 */
 	public void finish() {
 		// clear all events
 		events.clear();
-		if (leaveTime>Simulator.duration) leaveTime = Simulator.duration;
+		if (leaveTime>context.duration) leaveTime = context.duration;
 	}
 	
 	/**
@@ -33,6 +33,8 @@ package mobility;
 
 import java.util.ArrayList;
 
+import simulator.SimulationContext;
+
 
 /**
  * MobilityModel is the abstract base class for all mobility models.
@@ -44,6 +46,16 @@ public abstract class MobilityModel {
 	
 	/** list of mobile nodes */
 	public ArrayList<MobileNode> nodes = new ArrayList<MobileNode>();
+	/** simulation which uses this mobility model */
+	public SimulationContext context = null;
+	
+	/**
+	 * Creates a new mobility model
+	 * @param context Simulation which uses this mobility model
+	 */
+	public MobilityModel(SimulationContext context) {
+		this.context = context;
+	}
 	
 	/** initialization method */
 	public abstract void init();
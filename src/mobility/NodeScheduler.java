@@ -0,0 +1,138 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package mobility;
+
+import java.util.*;
+
+import simulator.*;
+
+/**
+ * NodeScheduler implements the event-driven update of mobile nodes. Instead of updating all
+ * nodes at every sample time, each node is registered with the time of its next event boundary
+ * (see MobileNode.getNextUpdateTime()) in a priority queue and is only updated at the first
+ * sample time after this boundary. 
+ * @author psommer
+ *
+ */
+public class NodeScheduler {
+
+	/**
+	 * Entry in the priority queue
+	 * @author psommer
+	 *
+	 */
+	private class Entry {
+		/** scheduled node */
+		MobileNode node = null;
+		/** time when the node has to be updated */
+		double time = 0;
+		
+		public Entry(MobileNode node, double time) {
+			this.node = node;
+			this.time = time;
+		}
+	}
+	
+	/** compares two entries by their update time */
+	private Comparator<Entry> timeComparator = new Comparator<Entry>() {
+		public int compare(Entry entry1, Entry entry2) {
+			return Double.compare(entry1.time, entry2.time);
+		}
+	};
+	
+	/** compares two nodes by their identifier */
+	private Comparator<MobileNode> idComparator = new Comparator<MobileNode>() {
+		public int compare(MobileNode node1, MobileNode node2) {
+			return node1.id - node2.id;
+		}
+	};
+	
+	/** scheduled nodes ordered by the update time */
+	PriorityQueue<Entry> queue = new PriorityQueue<Entry>(11, timeComparator);
+	/** all nodes of the mobility model */
+	List<MobileNode> nodes = null;
+	/** simulation which contains the nodes */
+	SimulationContext context = null;
+	
+	/**
+	 * Creates a scheduler for the given nodes
+	 * @param context Simulation which contains the nodes
+	 * @param nodes List of all nodes of the mobility model
+	 */
+	public NodeScheduler(SimulationContext context, List<MobileNode> nodes) {
+		this.context = context;
+		this.nodes = nodes;
+	}
+	
+	/**
+	 * Schedules the next update of the node. An earlier scheduled update of this node is replaced.
+	 * This method has to be called after each update of the node and whenever new events are 
+	 * added to the node from outside.
+	 * @param node Mobile node
+	 */
+	public void schedule(MobileNode node) {
+		double time = node.getNextUpdateTime();
+		node.scheduledTime = time;
+		if (time<Double.POSITIVE_INFINITY) queue.add(new Entry(node, time));
+	}
+	
+	/**
+	 * Returns the nodes which have to be updated at the given sample time ordered by the 
+	 * node identifier (the same order as in the sample-based mode). The returned nodes have 
+	 * to be scheduled again after their update.
+	 * At the last sample time of the simulation all nodes are returned, such that the node 
+	 * positions are up to date when the simulation finishes.
+	 * @param time Current sample time
+	 * @return List of nodes
+	 */
+	public List<MobileNode> getNodesToUpdate(double time) {
+		
+		if (time + context.step>context.duration) {
+			queue.clear();
+			return nodes;
+		}
+		
+		ArrayList<MobileNode> dueNodes = new ArrayList<MobileNode>();
+		
+		while (!queue.isEmpty() && queue.peek().time<=time) {
+			Entry entry = queue.poll();
+			// skip entries which have been replaced by a later call to schedule()
+			if (entry.time!=entry.node.scheduledTime) continue;
+			entry.node.scheduledTime = Double.NaN;
+			dueNodes.add(entry.node);
+		}
+		
+		Collections.sort(dueNodes, idComparator);
+		return dueNodes;
+	}
+	
+}
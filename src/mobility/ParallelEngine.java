@@ -0,0 +1,227 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package mobility;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import model.*;
+
+/**
+ * ParallelEngine updates the vehicles of a road-based mobility model on multiple threads.
+ * The update of a vehicle is split into phases (see Vehicle). Phases which only modify the vehicle itself
+ * (including road changes, as the route calculation of the road network is thread-safe) are executed in parallel. 
+ * The vehicles on the roads are then updated per road in parallel:
+ * roads without any vehicle entering or leaving are updated independently, all other roads are updated 
+ * together in the order of the node list. The generated traces are thus identical to the traces
+ * of the sequential update. 
+ * @author psommer
+ *
+ */
+public class ParallelEngine {
+
+	/**
+	 * Operation applied to all elements of a list
+	 */
+	public interface Operation<T> {
+		public void apply(T element);
+	}
+	
+	/**
+	 * Fork/join task applying an operation to a range of list elements
+	 */
+	class ForEachTask<T> extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		List<T> elements;
+		Operation<T> operation;
+		int from;
+		int to;
+		int granularity;
+		
+		ForEachTask(List<T> elements, Operation<T> operation, int from, int to, int granularity) {
+			this.elements = elements;
+			this.operation = operation;
+			this.from = from;
+			this.to = to;
+			this.granularity = granularity;
+		}
+		
+		protected void compute() {
+			if (to-from<=granularity) {
+				for (int i=from; i<to; i++) {
+					operation.apply(elements.get(i));
+				}
+			} else {
+				int middle = (from+to) >>> 1;
+				invokeAll(new ForEachTask<T>(elements, operation, from, middle, granularity), new ForEachTask<T>(elements, operation, middle, to, granularity));
+			}
+		}
+	}
+	
+	/** number of vehicles updated by a single task */
+	static final int granularity = 64;
+	
+	/** prepares a vehicle */
+	static final Operation<MobileNode> prepare = new Operation<MobileNode>() {
+		public void apply(MobileNode node) {
+			node.prepare();
+		}
+	};
+	
+	/** calculates the new speed and position of a vehicle */
+	static final Operation<MobileNode> advance = new Operation<MobileNode>() {
+		public void apply(MobileNode node) {
+			((Vehicle)node).advance();
+		}
+	};
+	
+	/** selects the following road of a vehicle reaching the end of its current road */
+	static final Operation<MobileNode> changeRoad = new Operation<MobileNode>() {
+		public void apply(MobileNode node) {
+			Vehicle vehicle = (Vehicle)node;
+			if (vehicle.isChangingRoad()) vehicle.changeRoad();
+		}
+	};
+	
+	/** applies the new positions of a group of vehicles (in list order) */
+	static final Operation<ArrayList<Vehicle>> apply = new Operation<ArrayList<Vehicle>>() {
+		public void apply(ArrayList<Vehicle> vehicles) {
+			for (int i=0; i<vehicles.size(); i++) {
+				vehicles.get(i).apply();
+			}
+		}
+	};
+	
+	/** determines the position on the map of a vehicle */
+	static final Operation<MobileNode> locate = new Operation<MobileNode>() {
+		public void apply(MobileNode node) {
+			((Vehicle)node).locate();
+		}
+	};
+	
+	/** thread pool */
+	ForkJoinPool pool = null;
+	
+	/**
+	 * Creates a new parallel engine
+	 * @param threads Number of threads (0 = number of available processors)
+	 */
+	public ParallelEngine(int threads) {
+		if (threads<=0) threads = Runtime.getRuntime().availableProcessors();
+		pool = new ForkJoinPool(threads);
+	}
+	
+	/**
+	 * Applies an operation to all elements of a list in parallel.
+	 * @param elements List elements
+	 * @param operation Operation to apply
+	 * @param granularity Maximum number of elements processed by a single task
+	 */
+	public <T> void forEach(List<T> elements, Operation<T> operation, int granularity) {
+		if (elements.size()>0) pool.invoke(new ForEachTask<T>(elements, operation, 0, elements.size(), granularity));
+	}
+	
+	/**
+	 * Calls prepare() of all nodes in parallel.
+	 * Only allowed if prepare() does not modify state shared between the nodes.
+	 * @param nodes Mobile nodes
+	 */
+	public void prepare(List<MobileNode> nodes) {
+		forEach(nodes, prepare, granularity);
+	}
+	
+	/**
+	 * Updates all vehicles for the next sample point (replaces next() of all vehicles).
+	 * @param nodes Vehicles in update order
+	 */
+	public void next(List<MobileNode> nodes) {
+		
+		// new speed and position on the current road
+		forEach(nodes, advance, granularity);
+		
+		// road changes
+		forEach(nodes, changeRoad, granularity);
+		
+		// collect all roads with vehicles entering or leaving
+		HashSet<RoadEdge> changedRoads = new HashSet<RoadEdge>();
+		for (int i=0; i<nodes.size(); i++) {
+			Vehicle vehicle = (Vehicle)nodes.get(i);
+			if (!vehicle.leftRoads.isEmpty()) {
+				changedRoads.addAll(vehicle.leftRoads);
+				changedRoads.add(vehicle.nextRoad);
+			}
+		}
+		
+		// group vehicles by their current road
+		ArrayList<Vehicle> changedGroup = new ArrayList<Vehicle>();
+		HashMap<RoadEdge, ArrayList<Vehicle>> roadGroups = new HashMap<RoadEdge, ArrayList<Vehicle>>();
+		ArrayList<ArrayList<Vehicle>> groups = new ArrayList<ArrayList<Vehicle>>();
+		groups.add(changedGroup);
+		
+		for (int i=0; i<nodes.size(); i++) {
+			Vehicle vehicle = (Vehicle)nodes.get(i);
+			if (changedRoads.contains(vehicle.road)) {
+				changedGroup.add(vehicle);
+			} else {
+				ArrayList<Vehicle> group = roadGroups.get(vehicle.road);
+				if (group==null) {
+					group = new ArrayList<Vehicle>();
+					roadGroups.put(vehicle.road, group);
+					groups.add(group);
+				}
+				group.add(vehicle);
+			}
+		}
+		
+		// update the vehicles on the roads
+		forEach(groups, apply, 1);
+		
+		// positions on the map
+		forEach(nodes, locate, granularity);
+		
+		// events in node order
+		for (int i=0; i<nodes.size(); i++) {
+			((Vehicle)nodes.get(i)).report();
+		}
+		
+	}
+	
+	/**
+	 * Shuts down the thread pool
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+	
+}
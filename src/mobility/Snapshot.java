@@ -0,0 +1,204 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package mobility;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+import model.*;
+
+/**
+ * Snapshot saves the state of a road-based mobility model after the warm-up phase to a binary file
+ * and restores it in later simulation runs, such that the warm-up phase can be skipped. 
+ * The snapshot contains the state of all vehicles (including their random number generators), 
+ * the traffic lights and the order of the vehicles on the roads. A key describing the parameters 
+ * which influence the warm-up phase is stored with the snapshot and has to match when it is restored.
+ * The file ends with a checksum. It is read and verified completely before any state is restored, 
+ * an error while restoring the verified state is fatal since the vehicles are then only partially restored.
+ * @author psommer
+ *
+ */
+public class Snapshot {
+
+	/** file identifier */
+	static final int magic = 0x474D5346;
+	/** file format version */
+	static final int version = 3;
+	/** locks of the snapshot files, shared by the simulations running in this process (see getLock()) */
+	static final HashMap<String, Object> locks = new HashMap<String, Object>();
+	
+	/**
+	 * Returns the lock of a snapshot file. Simulations hold the lock while they restore or create the snapshot, 
+	 * so simulations with the same snapshot file wait for the first one to write it.
+	 * @param file Snapshot file
+	 * @return Lock object of the file
+	 */
+	public static synchronized Object getLock(String file) {
+		String path = new File(file).getAbsolutePath();
+		Object lock = locks.get(path);
+		if (lock==null) {
+			lock = new Object();
+			locks.put(path, lock);
+		}
+		return lock;
+	}
+	
+	/**
+	 * Returns the snapshot file for the given key, i.e. the given file name suffixed with a hash of the key. 
+	 * Simulations with the same warm-up thus share a snapshot file (see Sweep).
+	 * @param file Snapshot file name
+	 * @param key Parameters of the simulation
+	 * @return Snapshot file for the key
+	 */
+	public static String getFile(String file, String key) {
+		long hash = 0;
+		for (int i=0; i<key.length(); i++) {
+			hash = 31*hash + key.charAt(i);
+		}
+		return file + "_" + Long.toHexString(hash);
+	}
+	
+	/**
+	 * Saves the state of the vehicles and the road network to a snapshot file.
+	 * The snapshot is written to a temporary file which then replaces the snapshot file, 
+	 * so other simulations never read an incomplete snapshot.
+	 * @param file Snapshot file
+	 * @param key Parameters of the simulation
+	 * @param network Road network
+	 * @param nodes Vehicles
+	 * @return Returns true if the snapshot was written successfully
+	 */
+	public static boolean save(String file, String key, RoadNetwork network, List<MobileNode> nodes) {
+		File temp = null;
+		try {
+			File target = new File(file).getAbsoluteFile();
+			temp = new File(target.getParentFile(), target.getName() + ".tmp");
+			CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(temp)), new CRC32());
+			DataOutputStream out = new DataOutputStream(checked);
+			out.writeInt(magic);
+			out.writeInt(version);
+			out.writeUTF(key);
+			out.writeInt(nodes.size());
+			for (int i=0; i<nodes.size(); i++) {
+				Vehicle vehicle = (Vehicle)nodes.get(i);
+				out.writeInt(vehicle.id);
+				vehicle.writeState(out);
+			}
+			network.writeState(out);
+			out.writeLong(checked.getChecksum().getValue());
+			out.close();
+			try {
+				Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			System.out.println("Saved warm-up snapshot to " + file);
+			return true;
+		} catch (Exception e) {
+			if (temp!=null) temp.delete();
+			System.err.println("Error writing snapshot " + file + ": " + e.getMessage());
+			return false;
+		}
+	}
+	
+	/**
+	 * Restores the state of the vehicles and the road network from a snapshot file
+	 * @param file Snapshot file
+	 * @param key Parameters of the simulation (has to match the key of the snapshot)
+	 * @param network Road network
+	 * @param nodes Vehicles
+	 * @return Returns true if the snapshot was restored successfully
+	 */
+	public static boolean load(String file, String key, RoadNetwork network, List<MobileNode> nodes) {
+		
+		File snapshot = new File(file);
+		if (!snapshot.exists()) return false;
+		
+		// read and verify the complete file before the state is restored
+		byte[] data = null;
+		try {
+			data = new byte[(int)snapshot.length()];
+			DataInputStream in = new DataInputStream(new FileInputStream(snapshot));
+			try {
+				in.readFully(data);
+			} finally {
+				in.close();
+			}
+			if (data.length<8) throw new IOException("File is truncated");
+			CRC32 checksum = new CRC32();
+			checksum.update(data, 0, data.length-8);
+			if (new DataInputStream(new ByteArrayInputStream(data, data.length-8, 8)).readLong()!=checksum.getValue()) {
+				throw new IOException("Checksum does not match (truncated or incomplete file)");
+			}
+		} catch (Exception e) {
+			System.err.println("Error reading snapshot " + file + ": " + e.getMessage());
+			return false;
+		}
+		
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length-8));
+		try {
+			if (in.readInt()!=magic || in.readInt()!=version) {
+				System.err.println("Snapshot " + file + " has an unknown format");
+				return false;
+			}
+			String snapshotKey = in.readUTF();
+			if (!snapshotKey.equals(key) || in.readInt()!=nodes.size()) {
+				System.err.println("Snapshot " + file + " does not match the simulation parameters (" + snapshotKey + ")");
+				return false;
+			}
+		} catch (IOException e) {
+			System.err.println("Error reading snapshot " + file + ": " + e.getMessage());
+			return false;
+		}
+		
+		// restore the state, the vehicles and roads are modified from here on
+		try {
+			HashMap<Integer, MobileNode> vehicles = new HashMap<Integer, MobileNode>();
+			for (int i=0; i<nodes.size(); i++) {
+				Vehicle vehicle = (Vehicle)nodes.get(i);
+				if (in.readInt()!=vehicle.id) throw new IOException("Unexpected node identifier");
+				vehicle.readState(in, network);
+				vehicles.put(vehicle.id, vehicle);
+			}
+			network.readState(in, vehicles);
+			if (in.available()>0) throw new IOException("Unexpected data at the end of the snapshot");
+		} catch (Exception e) {
+			throw new IllegalStateException("Error restoring snapshot " + file + " (state partially restored): " + e.getMessage(), e);
+		}
+		
+		System.out.println("Restored warm-up snapshot from " + file);
+		return true;
+	}
+	
+}
@@ -0,0 +1,158 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package mobility;
+
+import java.io.*;
+import java.util.*;
+
+import model.*;
+import simulator.*;
+
+/**
+ * Vehicle is the abstract base class for nodes moving on the roads of a road network.
+ * The update of a vehicle in next() is split into several steps, such that the parallel 
+ * engine (see ParallelEngine) can execute the steps which do not modify shared state 
+ * on multiple threads.
+ * @author psommer
+ *
+ */
+public abstract class Vehicle extends MobileNode {
+
+	/** position on the road after the current step */
+	protected double nextPosition = 0;
+	/** road after the current step */
+	protected RoadEdge nextRoad = null;
+	/** roads which are left during the current step */
+	protected ArrayList<RoadEdge> leftRoads = new ArrayList<RoadEdge>();
+	/** position on the map after the current step */
+	protected Position positionXY = null;
+	
+	/**
+	 * Creates a new vehicle
+	 * @param context Simulation which contains this vehicle
+	 * @param id unique node identifier
+	 */
+	public Vehicle(SimulationContext context, int id) {
+		super(context, id);
+	}
+	
+	/**
+	 * Calculates the speed and the position on the current road (nextPosition) for the current step.
+	 * This method must not modify any state shared with other vehicles.
+	 */
+	public abstract void advance();
+	
+	/**
+	 * Checks if the vehicle reaches the end of the current road in the current step.
+	 * @return True if the vehicle changes the road
+	 */
+	public boolean isChangingRoad() {
+		return nextPosition>=road.length;
+	}
+	
+	/**
+	 * Selects the following road (nextRoad) and the position on it for a vehicle reaching the end 
+	 * of the current road. Left roads are added to leftRoads. This method must not modify any state
+	 * shared with other vehicles, but may use the (thread-safe) route calculation of the road network.
+	 */
+	public abstract void changeRoad();
+	
+	/**
+	 * Applies the new position and updates the vehicles on the left roads and on the current road.
+	 */
+	public abstract void apply();
+	
+	/**
+	 * Determines the position on the map. Only reads the geometry of the current road.
+	 * The position object of the vehicle is reused for every step.
+	 */
+	public void locate() {
+		if (positionXY==null) positionXY = new Position();
+		positionXY = road.getPosition(this, positionXY);
+	}
+	
+	/**
+	 * Generates the events for the current step and processes the event queue of the node.
+	 * @return Returns true if everything went fine
+	 */
+	public abstract boolean report();
+	
+	/**
+	 * Processes the event queue of the node (see MobileNode.next())
+	 * @return Returns true if everything went fine
+	 */
+	protected boolean processEvents() {
+		return super.next();
+	}
+	
+	/**
+	 * Writes the state of the vehicle to a snapshot (see Snapshot)
+	 * @param out Snapshot output stream
+	 * @throws IOException
+	 */
+	public void writeState(DataOutputStream out) throws IOException {
+		out.writeLong(rng.getState());
+		out.writeDouble(x);
+		out.writeDouble(y);
+		out.writeInt(road.id);
+		out.writeDouble(position);
+		out.writeDouble(speed);
+	}
+	
+	/**
+	 * Restores the state of the vehicle from a snapshot. The vehicle is added to the road later 
+	 * by the road network (see RoadNetwork.readState()).
+	 * @param in Snapshot input stream
+	 * @param network Road network of the vehicle
+	 * @throws IOException
+	 */
+	public void readState(DataInputStream in, RoadNetwork network) throws IOException {
+		rng.setState(in.readLong());
+		x = in.readDouble();
+		y = in.readDouble();
+		road = network.getEdges().get(in.readInt());
+		position = in.readDouble();
+		speed = in.readDouble();
+	}
+	
+	/**
+	 * Executes all steps of the vehicle update.
+	 */
+	public boolean next() {
+		advance();
+		if (isChangingRoad()) changeRoad();
+		apply();
+		locate();
+		return report();
+	}
+	
+}
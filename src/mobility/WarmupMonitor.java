@@ -0,0 +1,181 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package mobility;
+
+import java.util.*;
+
+import model.*;
+import simulator.*;
+
+/**
+ * WarmupMonitor runs the warm-up phase of a road-based mobility model until the model reaches 
+ * a steady state. Aggregate statistics (mean speed, fraction of stopped vehicles and the variance 
+ * of the number of vehicles per road) are averaged over windows of consecutive steps. The warm-up 
+ * ends as soon as the averages of two consecutive windows differ by less than the tolerance, 
+ * or after the maximum number of steps.
+ * @author psommer
+ *
+ */
+public class WarmupMonitor {
+
+	/** maximum number of warm-up steps */
+	int maxSteps = 20000;
+	/** number of steps in a window */
+	int window = 500;
+	/** maximum relative change of the statistics between two windows */
+	double tolerance = 0.05;
+	/** speed below which a vehicle counts as stopped */
+	static final double stoppedSpeed = 0.1;
+	
+	/** number of executed warm-up steps */
+	int steps = 0;
+	/** statistics accumulated over the current window (mean speed, fraction stopped, occupancy variance) */
+	double[] current = new double[3];
+	/** statistics of the previous window (null before the first window is completed) */
+	double[] previous = null;
+	
+	/**
+	 * Creates a warm-up monitor with the parameters of the simulation
+	 * @param context Simulation
+	 */
+	public WarmupMonitor(SimulationContext context) {
+		
+		if (context.parameters.containsKey("WARMUP_MAX")) {
+			try {
+				maxSteps = Integer.valueOf(context.parameters.getProperty("WARMUP_MAX"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter WARMUP_MAX: " + e.getMessage());
+			}
+		}
+		
+		if (context.parameters.containsKey("WARMUP_WINDOW")) {
+			try {
+				window = Math.max(1, Integer.valueOf(context.parameters.getProperty("WARMUP_WINDOW")));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter WARMUP_WINDOW: " + e.getMessage());
+			}
+		}
+		
+		if (context.parameters.containsKey("WARMUP_TOLERANCE")) {
+			try {
+				tolerance = Double.valueOf(context.parameters.getProperty("WARMUP_TOLERANCE"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter WARMUP_TOLERANCE: " + e.getMessage());
+			}
+		}
+		
+	}
+	
+	/**
+	 * Executes the warm-up steps of the mobility model until a steady state is reached
+	 * @param model Mobility model
+	 * @param network Road network of the mobility model
+	 * @return Number of executed warm-up steps
+	 */
+	public int run(MobilityModel model, RoadNetwork network) {
+		
+		while (steps<maxSteps) {
+			
+			model.next();
+			steps++;
+			
+			if (update(model.nodes, network.getEdges().size())) {
+				System.out.println("Steady state reached after " + steps + " warm-up steps");
+				return steps;
+			}
+		}
+		
+		System.out.println("Warm-up stopped after " + steps + " steps (no steady state detected)");
+		return steps;
+	}
+	
+	/**
+	 * Adds the statistics of the current step to the current window
+	 * @param nodes Vehicles
+	 * @param roads Number of roads
+	 * @return True if the steady state is reached
+	 */
+	boolean update(List<MobileNode> nodes, int roads) {
+		
+		double speed = 0;
+		double stopped = 0;
+		double occupancySquares = 0;
+		
+		for (int i=0; i<nodes.size(); i++) {
+			MobileNode node = nodes.get(i);
+			speed += node.speed;
+			if (node.speed<stoppedSpeed) stopped++;
+			// sum over all roads of the squared vehicle count = sum over all vehicles of the vehicle count on their road
+			occupancySquares += node.road.getVehicleCount();
+		}
+		
+		if (nodes.size()>0) {
+			double occupancy = 1.0*nodes.size()/roads;
+			current[0] += speed/nodes.size();
+			current[1] += stopped/nodes.size();
+			current[2] += occupancySquares/roads - occupancy*occupancy;
+		}
+		
+		if (steps%window!=0) return false;
+		
+		// window completed
+		boolean steady = previous!=null;
+		for (int i=0; i<current.length; i++) {
+			current[i] /= window;
+			if (previous!=null && !isSteady(previous[i], current[i])) steady = false;
+		}
+		
+		previous = current;
+		current = new double[3];
+		
+		return steady;
+	}
+	
+	/**
+	 * Compares a statistic of two consecutive windows
+	 * @param previous Average of the previous window
+	 * @param current Average of the current window
+	 * @return True if the relative change is below the tolerance
+	 */
+	boolean isSteady(double previous, double current) {
+		double scale = Math.max(Math.abs(previous), Math.abs(current));
+		return scale<1e-9 || Math.abs(current-previous)<=tolerance*scale;
+	}
+	
+	/**
+	 * Returns a description of the warm-up parameters
+	 */
+	public String toString() {
+		return "WARMUP_MAX=" + maxSteps + " WARMUP_WINDOW=" + window + " WARMUP_TOLERANCE=" + tolerance;
+	}
+	
+}
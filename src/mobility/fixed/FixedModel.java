@@ -47,46 +47,75 @@ public class FixedModel extends MobilityModel {
 	
 	
 	/** minimum speed parameter (used for steady-state initialization) */
-	public static double speedMin = 0;
+	public double speedMin = 0;
 	/** maximum speed parameter (used for steady-state initialization) */
-	public static double speedMax = 0;
+	public double speedMax = 0;
+	/** update nodes only at their event boundaries instead of every sample time */
+	boolean eventDriven = false;
+	/** scheduler for the event-driven mode */
+	NodeScheduler scheduler = null;
+	
+	/**
+	 * Creates the fixed model
+	 * @param context Simulation which uses this mobility model
+	 */
+	public FixedModel(SimulationContext context) {
+		super(context);
+	}
 	
 	public void init() {
 		
 		
-		if (Simulator.parameters.containsKey("NODES")) {
+		if (context.parameters.containsKey("NODES")) {
 			int nodesNumber = 0;
 			try {
-				nodesNumber = Integer.valueOf(Simulator.parameters.getProperty("NODES"));
+				nodesNumber = Integer.valueOf(context.parameters.getProperty("NODES"));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter NODES: " + e.getMessage());
 			}
 			
 			
 			
-			if (Simulator.parameters.containsKey("SPEED_MIN")) {
+			if (context.parameters.containsKey("SPEED_MIN")) {
 				try {
-					 speedMin = Double.valueOf(Simulator.parameters.getProperty("SPEED_MIN"));
+					 speedMin = Double.valueOf(context.parameters.getProperty("SPEED_MIN"));
 				} catch (Exception e) {
 					System.err.println("Error parsing parameter SPEED_MIN: " + e.getMessage());
 				}
 			}
 			
-			if (Simulator.parameters.containsKey("SPEED_MAX")) {
+			if (context.parameters.containsKey("SPEED_MAX")) {
 				try {
-					 speedMax = Double.valueOf(Simulator.parameters.getProperty("SPEED_MAX"));
+					 speedMax = Double.valueOf(context.parameters.getProperty("SPEED_MAX"));
 				} catch (Exception e) {
 					System.err.println("Error parsing parameter SPEED_MAX: " + e.getMessage());
 				}
 			}
 			
+			if (context.parameters.containsKey("EVENT_DRIVEN")) {
+				try {
+					 eventDriven = (1==Integer.valueOf(context.parameters.getProperty("EVENT_DRIVEN")));
+				} catch (Exception e) {
+					System.err.println("Error parsing parameter EVENT_DRIVEN: " + e.getMessage());
+				}
+			}
+			
 			// intialize nodes
 			System.out.println("Initialization of dummy model (no mobility)");
 			for (int i=1; i<=nodesNumber; i++) {
-				MobileNode node = new NodeFixed(i);
+				MobileNode node = new NodeFixed(this, i);
 				nodes.add(node);
 				node.init();
-				Simulator.uniqueNodes++;
+				context.uniqueNodes++;
+			}
+			
+			// schedule the first update of all nodes
+			if (eventDriven) {
+				scheduler = new NodeScheduler(context, nodes);
+				Iterator<MobileNode> it = nodes.iterator();
+				while (it.hasNext()) {
+					scheduler.schedule(it.next());
+				}
 			}
 			
 		} else {
@@ -99,6 +128,17 @@ public class FixedModel extends MobilityModel {
 
 	public void next() {
 		
+		if (eventDriven) {
+			// update nodes with an event boundary since the last sample point
+			Iterator<MobileNode> it = scheduler.getNodesToUpdate(context.time).iterator(); 
+			while (it.hasNext()) {
+				MobileNode node = it.next();
+				node.next();
+				scheduler.schedule(node);
+			}
+			return;
+		}
+		
 		Iterator<MobileNode> it = nodes.iterator(); 
 		
 		while (it.hasNext()) {
@@ -43,12 +43,17 @@ import event.*;
  */
 public class NodeFixed extends MobileNode {
 	
+	/** mobility model of this node */
+	FixedModel model = null;
+	
 	/**
 	 * Creates a new fixed node without any mobility
+	 * @param model Mobility model of this node
 	 * @param id unique node identifier
 	 */
-	public NodeFixed(int id) {
-		super(id);
+	public NodeFixed(FixedModel model, int id) {
+		super(model.context, id);
+		this.model = model;
 	}
 	
 	public void init() {
@@ -61,34 +66,34 @@ public class NodeFixed extends MobileNode {
 		
 		while (reject) {
 			
-			double x1 = Simulator.rng.nextDouble();
-			double x2 = Simulator.rng.nextDouble();
-			double y1 = Simulator.rng.nextDouble();
-			double y2 = Simulator.rng.nextDouble();
+			double x1 = rng.nextDouble();
+			double x2 = rng.nextDouble();
+			double y1 = rng.nextDouble();
+			double y2 = rng.nextDouble();
 			
 			
 			double r = Math.sqrt((x2-x1)*(x2-x1) + (y2-y1)*(y2-y1))/Math.sqrt(2); 
-			double u = Simulator.rng.nextDouble();
+			double u = rng.nextDouble();
 			
 			
 			if (u<r) {
 				// accept initial positions
 				reject = false;
 				
-				u = Simulator.rng.nextDouble();
+				u = rng.nextDouble();
 				// select a random position on the line between (x1,y1) and (x2,y2)
 				double initX = u*x1 + (1-u)*x2;
 				double initY = u*y1 + (1-u)*y2;
 				
 				// initial speed
-				u = Simulator.rng.nextDouble();
+				u = rng.nextDouble();
 				
 				// node joins the simulation
-				Join join = new Join(this, 0.0, Simulator.size*initX, Simulator.size*initY);
+				Join join = new Join(this, 0.0, context.size*initX, context.size*initY);
 				addEvent(join);
 				
 				// pause node during the whole simulation period
-				addEvent(new Pause(this, 0.0, Simulator.duration,  join.x, join.y));
+				addEvent(new Pause(this, 0.0, context.duration,  join.x, join.y));
 				
 			}
 								
@@ -109,8 +114,8 @@ public class NodeFixed extends MobileNode {
 	}
 	
 	public void finish() {
-		addEvent(new Leave(this, Simulator.duration, x, y));
-		Simulator.removeNode(Simulator.duration, this);
+		addEvent(new Leave(this, context.duration, x, y));
+		context.removeNode(context.duration, this);
 		super.finish();
 	}
 	
@@ -0,0 +1,159 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package mobility.gis;
+
+import java.util.*;
+
+import mobility.*;
+import model.*;
+import simulator.*;
+
+/**
+ * CongestionMonitor adapts the weights of the roads to the observed traffic. The speeds of the vehicles 
+ * on each road are averaged over a number of steps, the travel time at this speed is then blended into the 
+ * weight of the road (the weight never drops below the travel time at the speed limit). Vehicles recalculate 
+ * the remaining part of their route at the next intersection after the weights have been updated.
+ * @author psommer
+ *
+ */
+public class CongestionMonitor {
+
+	/** number of steps between two weight updates (0 if the weights are not updated) */
+	int interval = 0;
+	/** weight of the observed travel time in the updated road weight */
+	double smoothing = 0.5;
+	/** lower bound for the observed speed relative to the speed limit */
+	static final double minSpeedRatio = 0.1;
+	
+	/** number of steps since the last weight update */
+	int steps = 0;
+	/** sum of the observed vehicle speeds on each road */
+	double[] speeds = null;
+	/** number of observed vehicles on each road */
+	int[] counts = null;
+	
+	/**
+	 * Creates a congestion monitor with the parameters of the simulation
+	 * @param context Simulation
+	 */
+	public CongestionMonitor(SimulationContext context) {
+		
+		if (context.parameters.containsKey("DYNAMIC_WEIGHTS")) {
+			try {
+				interval = Math.max(0, Integer.valueOf(context.parameters.getProperty("DYNAMIC_WEIGHTS")));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter DYNAMIC_WEIGHTS: " + e.getMessage());
+			}
+		}
+		
+		if (context.parameters.containsKey("DYNAMIC_WEIGHTS_SMOOTHING")) {
+			try {
+				smoothing = Math.min(1, Math.max(0, Double.valueOf(context.parameters.getProperty("DYNAMIC_WEIGHTS_SMOOTHING"))));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter DYNAMIC_WEIGHTS_SMOOTHING: " + e.getMessage());
+			}
+		}
+		
+	}
+	
+	/**
+	 * Checks if the weights of the roads are updated
+	 * @return True if the weights depend on the traffic
+	 */
+	public boolean isEnabled() {
+		return interval>0;
+	}
+	
+	/**
+	 * Checks if the weights of the roads are updated in the next step
+	 * @return True if the next call of next() updates the weights
+	 */
+	public boolean isUpdateDue() {
+		return isEnabled() && steps+1>=interval;
+	}
+	
+	/**
+	 * Discards the observations since the last weight update
+	 * @param network Road network
+	 */
+	public void reset(RoadNetwork network) {
+		steps = 0;
+		speeds = new double[network.getEdges().size()];
+		counts = new int[network.getEdges().size()];
+	}
+	
+	/**
+	 * Observes the vehicles of the current step and updates the weights of the roads if the interval has elapsed
+	 * @param network Road network
+	 * @param vehicles Vehicles on the roads
+	 */
+	public void next(RoadNetwork network, List<MobileNode> vehicles) {
+		
+		if (!isEnabled()) return;
+		if (speeds==null) reset(network);
+		
+		for (int i=0; i<vehicles.size(); i++) {
+			MobileNode vehicle = vehicles.get(i);
+			speeds[vehicle.road.id] += vehicle.speed;
+			counts[vehicle.road.id]++;
+		}
+		
+		steps++;
+		if (steps<interval) return;
+		
+		// update the road weights
+		List<RoadEdge> edges = network.getEdges();
+		for (int i=0; i<edges.size(); i++) {
+			RoadEdge edge = edges.get(i);
+			if (edge.maxSpeed<=0) continue;
+			
+			double freeWeight = edge.length/edge.maxSpeed;
+			double observedWeight = freeWeight;
+			if (counts[i]>0) {
+				double speed = Math.max(speeds[i]/counts[i], minSpeedRatio*edge.maxSpeed);
+				observedWeight = edge.length/speed;
+			}
+			edge.weight = Math.max(freeWeight, (1-smoothing)*edge.weight + smoothing*observedWeight);
+		}
+		network.updateWeights();
+		
+		reset(network);
+	}
+	
+	/**
+	 * Returns a description of the congestion parameters
+	 */
+	public String toString() {
+		return "DYNAMIC_WEIGHTS=" + interval + " DYNAMIC_WEIGHTS_SMOOTHING=" + smoothing;
+	}
+	
+}
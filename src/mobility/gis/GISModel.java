@@ -36,7 +36,12 @@ import java.util.*;
 
 import simulator.*;
 import mobility.*;
+import model.ContractionHierarchy;
+import model.Landmarks;
+import model.PathTreeCache;
 import model.RoadNode;
+import model.RoutePlanner;
+import model.TrafficLightController;
 
 
 /**
@@ -49,36 +54,186 @@ public class GISModel extends MobilityModel {
 	
 	
 	// landscape model (GIS data)
-	static LandscapeModel landscape = null;
-	static boolean enableTrafficLights = false;
-	static boolean enableCarFollowing = false;
+	LandscapeModel landscape = null;
+	boolean enableTrafficLights = false;
+	/** update the traffic lights only when their state can change */
+	boolean enableLightController = false;
+	/** updates the traffic lights (null if all intersections are updated in every step) */
+	TrafficLightController lights = null;
+	boolean enableCarFollowing = false;
 
-	static boolean warmupPhase = true;
+	boolean warmupPhase = true;
+	
+	/** parallel update of the vehicles (null for sequential update) */
+	ParallelEngine engine = null;
+	/** file for the snapshot of the state after the warm-up phase (null if no snapshot is used) */
+	String snapshotFile = null;
+	/** use a contraction hierarchy for the route calculation */
+	boolean enableHierarchy = false;
+	/** file for the contraction hierarchy (null if the hierarchy is not saved) */
+	String hierarchyFile = null;
+	/** number of landmarks for the bidirectional ALT search (0 if the A* algorithm is used) */
+	int landmarkCount = 0;
+	/** maximum number of cached shortest path trees (0 if no trees are cached) */
+	int routeCache = 0;
+	/** updates the road weights according to the traffic */
+	CongestionMonitor congestion = null;
+	/** calculates the next trips of the vehicles in the background (null if the routes are calculated when needed) */
+	RoutePlanner planner = null;
+	/** evaluate the car-following model for all vehicles in a single loop over primitive arrays */
+	boolean enableKernel = false;
+	/** car-following model of all vehicles (null if the vehicles are prepared one by one) */
+	IDMKernel kernel = null;
+	
+	/** updates the traffic lights of an intersection */
+	static final ParallelEngine.Operation<RoadNode> updateTrafficLight = new ParallelEngine.Operation<RoadNode>() {
+		public void apply(RoadNode intersection) {
+			intersection.next();
+		}
+	};
+	
+	/**
+	 * Creates the GIS-based mobility model
+	 * @param context Simulation which uses this mobility model
+	 */
+	public GISModel(SimulationContext context) {
+		super(context);
+	}
+	
+	/**
+	 * Loads the landscape model (roads and destinations) from the given input directory
+	 * @param inputDirectory Directory containing the road topology file (roads.dat)
+	 * @return Landscape model
+	 */
+	public static LandscapeModel loadLandscape(String inputDirectory) {
+		LandscapeModel landscape = new LandscapeModel();
+		LandscapeModelFactory.addRoads(inputDirectory + "/roads.dat", landscape);
+		//LandscapeModelFactory.addPointOfInterests(inputDirectory + "/points.dat", landscape);
+		LandscapeModelFactory.addPointOfInterests(landscape);
+		return landscape;
+	}
 	
 	public void init() {
 		
 		
-		landscape = new LandscapeModel();
-		LandscapeModelFactory.addRoads(Simulator.inputDirectory + "/roads.dat", landscape);
-		//LandscapeModelFactory.addPointOfInterests(Simulator.inputDirectory + "/points.dat", landscape);
-		LandscapeModelFactory.addPointOfInterests(landscape);
+		if (context.parameters.containsKey("CONTRACTION_HIERARCHY")) {
+			try {
+				 enableHierarchy = (1==Integer.valueOf(context.parameters.getProperty("CONTRACTION_HIERARCHY")));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter CONTRACTION_HIERARCHY: " + e.getMessage());
+			}
+		}
+		
+		if (context.parameters.containsKey("CONTRACTION_HIERARCHY_FILE")) {
+			hierarchyFile = context.parameters.getProperty("CONTRACTION_HIERARCHY_FILE");
+			enableHierarchy = true;
+		}
+		
+		if (context.parameters.containsKey("LANDMARKS")) {
+			try {
+				landmarkCount = Integer.valueOf(context.parameters.getProperty("LANDMARKS"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter LANDMARKS: " + e.getMessage());
+			}
+		}
+		
+		if (context.parameters.containsKey("ROUTE_CACHE")) {
+			try {
+				routeCache = Integer.valueOf(context.parameters.getProperty("ROUTE_CACHE"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter ROUTE_CACHE: " + e.getMessage());
+			}
+		}
+		
+		congestion = new CongestionMonitor(context);
+		if (congestion.isEnabled() && enableHierarchy) {
+			System.err.println("The contraction hierarchy depends on the road weights and is not used with DYNAMIC_WEIGHTS.");
+			enableHierarchy = false;
+			hierarchyFile = null;
+		}
 		
-		if (Simulator.parameters.containsKey("CAR_FOLLOWING")) {
+		if (context.landscape!=null) {
+			// landscape model shared with other simulations (the contraction hierarchy and the landmarks are prepared only once)
+			synchronized (context.landscape) {
+				if (enableHierarchy && context.landscape.roadNetwork.getHierarchy()==null) {
+					context.landscape.roadNetwork.setHierarchy(ContractionHierarchy.prepare(context.landscape.roadNetwork, hierarchyFile));
+				}
+				// landmarks by the requested number, which may be more than the number of landmarks found
+				Landmarks landmarks = null;
+				if (landmarkCount>0) {
+					landmarks = context.landscape.landmarks.get(landmarkCount);
+					if (landmarks==null) {
+						landmarks = new Landmarks(context.landscape.roadNetwork.getGraph(), landmarkCount);
+						context.landscape.landmarks.put(landmarkCount, landmarks);
+					}
+				}
+				landscape = context.landscape.copy();
+				landscape.roadNetwork.setLandmarks(landmarks);
+			}
+			if (!enableHierarchy) landscape.roadNetwork.setHierarchy(null);
+			// each simulation has its own cache with its own capacity and statistics
+			landscape.roadNetwork.setTreeCache(routeCache>0 ? new PathTreeCache(routeCache) : null);
+		} else {
+			landscape = loadLandscape(context.inputDirectory);
+			if (enableHierarchy) landscape.roadNetwork.setHierarchy(ContractionHierarchy.prepare(landscape.roadNetwork, hierarchyFile));
+			if (landmarkCount>0) landscape.roadNetwork.prepareLandmarks(landmarkCount);
+			if (routeCache>0) landscape.roadNetwork.setTreeCache(new PathTreeCache(routeCache));
+		}
+		
+		if (context.parameters.containsKey("CAR_FOLLOWING")) {
 			try {
-				 enableCarFollowing = (1==Integer.valueOf(Simulator.parameters.getProperty("CAR_FOLLOWING")));
+				 enableCarFollowing = (1==Integer.valueOf(context.parameters.getProperty("CAR_FOLLOWING")));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter CAR_FOLLOWING: " + e.getMessage());
 			}
 		}
 		
-		if (Simulator.parameters.containsKey("TRAFFIC_LIGHTS")) {
+		if (context.parameters.containsKey("TRAFFIC_LIGHTS")) {
 			try {
-				 enableTrafficLights = (1==Integer.valueOf(Simulator.parameters.getProperty("TRAFFIC_LIGHTS")));
+				 enableTrafficLights = (1==Integer.valueOf(context.parameters.getProperty("TRAFFIC_LIGHTS")));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter TRAFFIC_LIGHTS: " + e.getMessage());
 			}
 		}
 		
+		if (context.parameters.containsKey("TRAFFIC_LIGHT_CONTROLLER")) {
+			try {
+				 enableLightController = (1==Integer.valueOf(context.parameters.getProperty("TRAFFIC_LIGHT_CONTROLLER")));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter TRAFFIC_LIGHT_CONTROLLER: " + e.getMessage());
+			}
+		}
+		
+		if (context.parameters.containsKey("IDM_KERNEL")) {
+			try {
+				 enableKernel = (1==Integer.valueOf(context.parameters.getProperty("IDM_KERNEL")));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter IDM_KERNEL: " + e.getMessage());
+			}
+		}
+		
+		if (context.parameters.containsKey("THREADS")) {
+			try {
+				int threads = Integer.valueOf(context.parameters.getProperty("THREADS"));
+				if (threads!=1) engine = new ParallelEngine(threads);
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter THREADS: " + e.getMessage());
+			}
+		}
+		
+		if (context.parameters.containsKey("WARMUP_SNAPSHOT")) {
+			snapshotFile = context.parameters.getProperty("WARMUP_SNAPSHOT");
+		}
+		
+		if (context.parameters.containsKey("ROUTE_THREADS")) {
+			try {
+				int threads = Integer.valueOf(context.parameters.getProperty("ROUTE_THREADS"));
+				if (threads>0) planner = new RoutePlanner(landscape.roadNetwork, threads);
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter ROUTE_THREADS: " + e.getMessage());
+			}
+		}
+		
 		
 		// initialize traffic lights
 		if (enableTrafficLights) {
@@ -87,14 +242,15 @@ public class GISModel extends MobilityModel {
 				RoadNode intersection = it.next();
 				intersection.init();
 			}
+			if (enableLightController) lights = new TrafficLightController(landscape.roadNetwork);
 		}
 		
 		
 		
-		if (Simulator.parameters.containsKey("NODES")) {
+		if (context.parameters.containsKey("NODES")) {
 			int nodesNumber = 0;
 			try {
-				nodesNumber = Integer.valueOf(Simulator.parameters.getProperty("NODES"));
+				nodesNumber = Integer.valueOf(context.parameters.getProperty("NODES"));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter NODES: " + e.getMessage());
 			}
@@ -102,12 +258,14 @@ public class GISModel extends MobilityModel {
 			// intialize nodes
 			System.out.println("Initialization of GIS model");
 			for (int i=1; i<=nodesNumber; i++) {
-				NodeGIS node = new NodeGIS(i);
+				NodeGIS node = new NodeGIS(this, i);
 				nodes.add(node);
 				node.warmup();
-				Simulator.uniqueNodes++;
+				context.uniqueNodes++;
 			}
 			
+			if (enableKernel && nodes.size()>0) kernel = new IDMKernel((NodeGIS)nodes.get(0), enableCarFollowing, enableTrafficLights);
+			
 		} else {
 			System.err.println("Number of nodes not specified. Use the NODES parameter to specify the node number.");
 			return;
@@ -115,13 +273,39 @@ public class GISModel extends MobilityModel {
 		
 		
 		
-		// warm-up phase (5000 seconds)
-		for (int i=1; i<5000; i++) {
-			next();
+		// warm-up phase until a steady state is reached, skipped if the state after the warm-up is restored from a snapshot
+		WarmupMonitor warmup = new WarmupMonitor(context);
+		// the routing options may select different routes of equal cost
+		String snapshotKey = "GIS NETWORK=" + Long.toHexString(landscape.roadNetwork.getFingerprint()) + " CONTRACTION_HIERARCHY=" + enableHierarchy + " LANDMARKS=" + landmarkCount + " ROUTE_CACHE=" + routeCache + " NODES=" + nodes.size() + " SEED=" + context.seed + " CAR_FOLLOWING=" + enableCarFollowing + " TRAFFIC_LIGHTS=" + enableTrafficLights + (kernel!=null ? " IDM_KERNEL=1" : "") + " " + congestion + " " + warmup;
+		
+		if (snapshotFile!=null && context.snapshotPerKey) snapshotFile = Snapshot.getFile(snapshotFile, snapshotKey);
+		
+		// simulations with the same snapshot file wait until the first one has written it
+		synchronized (snapshotFile!=null ? Snapshot.getLock(snapshotFile) : this) {
+			if (snapshotFile==null || !Snapshot.load(snapshotFile, snapshotKey, landscape.roadNetwork, nodes)) {
+				warmup.run(this, landscape.roadNetwork);
+				if (lights!=null) lights.synchronize();
+				if (snapshotFile!=null) Snapshot.save(snapshotFile, snapshotKey, landscape.roadNetwork, nodes);
+			}
 		}
 		
+		// the schedule of the traffic lights continues from the (restored) state of the intersections
+		if (lights!=null) lights.schedule();
+		
 		warmupPhase = false;
 		
+		// the observations of the warm-up phase are not part of the snapshot
+		if (congestion.isEnabled()) congestion.reset(landscape.roadNetwork);
+		
+		// the routes of the next trips are not part of the snapshot
+		if (planner!=null) {
+			Iterator<MobileNode> nodeIt = nodes.iterator();
+			while (nodeIt.hasNext()) {
+				NodeGIS node = (NodeGIS)nodeIt.next();
+				if (node.nextDestination!=null && node.nextRoute==null) node.submitTrip();
+			}
+		}
+		
 		// nodes
 		Iterator<MobileNode> it = nodes.iterator(); 
 		
@@ -135,9 +319,27 @@ public class GISModel extends MobilityModel {
 
 	public void next() {
 
+		// road weights (not changed while routes are calculated in the background)
+		if (planner!=null && congestion.isUpdateDue()) planner.await();
+		congestion.next(landscape.roadNetwork, nodes);
 		
+		if (engine!=null) {
+			
+			// traffic lights (each intersection only switches the lights of its incoming roads)
+			if (lights!=null) lights.next(nodes);
+			else if (enableTrafficLights) engine.forEach(landscape.roadNetwork.getNodes(), updateTrafficLight, 64);
+			
+			// nodes
+			if (kernel!=null) kernel.prepare(landscape.roadNetwork, nodes.size(), engine);
+			else engine.prepare(nodes);
+			engine.next(nodes);
+			return;
+		}
 		
-		if (enableTrafficLights) {
+		if (lights!=null) {
+			// traffic lights whose state can change
+			lights.next(nodes);
+		} else if (enableTrafficLights) {
 			// traffic lights
 			Iterator<RoadNode> it = landscape.roadNetwork.getNodes().iterator();
 			while (it.hasNext()) {
@@ -148,11 +350,14 @@ public class GISModel extends MobilityModel {
 		
 		
 		// nodes
-		Iterator<MobileNode> it2 = nodes.iterator(); 
-		
-		while (it2.hasNext()) {
-			MobileNode node = it2.next();
-			node.prepare();
+		if (kernel!=null) {
+			kernel.prepare(landscape.roadNetwork, nodes.size(), null);
+		} else {
+			Iterator<MobileNode> it2 = nodes.iterator(); 
+			while (it2.hasNext()) {
+				MobileNode node = it2.next();
+				node.prepare();
+			}
 		}
 		
 		Iterator<MobileNode> it3 = nodes.iterator(); 
@@ -167,6 +372,13 @@ public class GISModel extends MobilityModel {
 
 	
 	public void finish() {
+		if (engine!=null) engine.shutdown();
+		if (planner!=null) {
+			planner.shutdown();
+			System.out.println(planner);
+		}
+		if (landscape.roadNetwork.getTreeCache()!=null) System.out.println(landscape.roadNetwork.getTreeCache());
+		
 		Iterator<MobileNode> it = nodes.iterator(); 
 		while (it.hasNext()) {
 			MobileNode node = it.next();
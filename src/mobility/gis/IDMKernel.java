@@ -0,0 +1,248 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package mobility.gis;
+
+import java.util.*;
+
+import mobility.*;
+import model.*;
+
+/**
+ * IDMKernel evaluates the Intelligent Driver Model for all vehicles of the GIS model in a single loop over 
+ * primitive arrays (structure of arrays) and replaces the prepare() method of the vehicles.
+ * The state of the vehicles is collected road by road, from the foremost to the rearmost vehicle, 
+ * so the vehicle in front is always the previous array element on the same road. Roads are independent
+ * of each other and are evaluated in parallel if a parallel engine is used. 
+ * The powers of the model are calculated by multiplications instead of Math.pow, the resulting speeds
+ * may therefore differ in the last digits from the update by the vehicles.
+ * @author psommer
+ *
+ */
+public class IDMKernel {
+
+	/** vehicles in road order */
+	NodeGIS[] vehicles = new NodeGIS[0];
+	/** position of the vehicles on their roads */
+	double[] position = new double[0];
+	/** current speed of the vehicles */
+	double[] speed = new double[0];
+	/** desired speed of the vehicles */
+	double[] desiredSpeed = new double[0];
+	/** distance to a red traffic light at the end of the road (infinity for a green light) */
+	double[] lightDistance = new double[0];
+	/** index of the vehicle in front on the same road (-1 for the foremost vehicle) */
+	int[] leader = new int[0];
+	/** first road, road after the last road and first array index of the roads evaluated by a single task of the parallel engine */
+	List<int[]> ranges = new ArrayList<int[]>();
+	/** roads of the network evaluated in the current step */
+	List<RoadEdge> roads = null;
+	
+	/** vehicles follow the vehicle in front */
+	final boolean carFollowing;
+	/** vehicles stop at red traffic lights */
+	final boolean trafficLights;
+	
+	/** driver reaction time */
+	final double t_react;
+	/** vehicle length */
+	final double length;
+	/** minimal desired gap between cars */
+	final double s_0;
+	/** minimal desired gap to traffic light */
+	final double s_t;
+	/** comfortable acceleration */
+	final double a;
+	/** comfortable deceleration */
+	final double b;
+	/** breaking constant */
+	final double k;
+	/** denominator of the dynamic part of the desired gap (2*sqrt(a*b)) */
+	final double brakingTerm;
+	
+	/** evaluates the model for a range of roads */
+	final ParallelEngine.Operation<int[]> evaluate = new ParallelEngine.Operation<int[]>() {
+		public void apply(int[] range) {
+			evaluate(roads, range[0], range[1], range[2]);
+		}
+	};
+	
+	/**
+	 * Creates the kernel for the GIS model. The driver parameters are identical for all vehicles 
+	 * and taken from the given vehicle.
+	 * @param driver Vehicle with the driver parameters
+	 * @param carFollowing True if the vehicles follow the vehicle in front
+	 * @param trafficLights True if the vehicles stop at red traffic lights
+	 */
+	public IDMKernel(NodeGIS driver, boolean carFollowing, boolean trafficLights) {
+		this.carFollowing = carFollowing;
+		this.trafficLights = trafficLights;
+		t_react = driver.t_react;
+		length = driver.length;
+		s_0 = driver.s_0;
+		s_t = driver.s_t;
+		a = driver.a;
+		b = driver.b;
+		k = driver.k;
+		brakingTerm = 2*Math.sqrt(a*b);
+	}
+	
+	/**
+	 * Calculates the change in speed (dv) of all vehicles for the next step.
+	 * @param network Road network with the vehicles on its roads
+	 * @param vehicleCount Number of vehicles
+	 * @param engine Parallel engine which evaluates the roads (null for a sequential evaluation)
+	 */
+	public void prepare(RoadNetwork network, int vehicleCount, ParallelEngine engine) {
+		
+		if (vehicles.length!=vehicleCount) allocate(vehicleCount);
+		roads = network.getEdges();
+		
+		if (engine==null) {
+			evaluate(roads, 0, roads.size(), 0);
+			return;
+		}
+		
+		if (ranges.isEmpty()) {
+			for (int from=0; from<roads.size(); from+=256) {
+				ranges.add(new int[] {from, Math.min(from+256, roads.size()), 0});
+			}
+		}
+		
+		// the vehicles of a range of roads start after the vehicles of the previous ranges
+		int offset = 0;
+		for (int i=0; i<ranges.size(); i++) {
+			int[] range = ranges.get(i);
+			range[2] = offset;
+			for (int road=range[0]; road<range[1]; road++) {
+				offset+=roads.get(road).getVehicleCount();
+			}
+		}
+		
+		engine.forEach(ranges, evaluate, 1);
+	}
+	
+	/**
+	 * Resizes the arrays for the given number of vehicles
+	 * @param vehicleCount Number of vehicles
+	 */
+	void allocate(int vehicleCount) {
+		vehicles = new NodeGIS[vehicleCount];
+		position = new double[vehicleCount];
+		speed = new double[vehicleCount];
+		desiredSpeed = new double[vehicleCount];
+		lightDistance = new double[vehicleCount];
+		leader = new int[vehicleCount];
+	}
+	
+	/**
+	 * Collects the state of the vehicles on a range of roads and evaluates the model road by road,
+	 * while the vehicles of the road are still in the cache.
+	 * @param roads Roads of the network
+	 * @param from Index of the first road
+	 * @param to Index after the last road
+	 * @param offset Array index of the foremost vehicle on the first road
+	 */
+	void evaluate(List<RoadEdge> roads, int from, int to, int offset) {
+		
+		int index = offset;
+		
+		for (int i=from; i<to; i++) {
+			RoadEdge road = roads.get(i);
+			MobileNode vehicle = road.getForemostVehicle();
+			if (vehicle==null) continue;
+			
+			double light = Double.POSITIVE_INFINITY;
+			boolean red = trafficLights && road.getTrafficLight();
+			int first = index;
+			
+			while (vehicle!=null) {
+				NodeGIS node = (NodeGIS)vehicle;
+				vehicles[index] = node;
+				position[index] = node.position;
+				speed[index] = node.speed;
+				desiredSpeed[index] = node.v_max;
+				if (red) light = road.length - s_t - node.position;
+				lightDistance[index] = light;
+				leader[index] = (index==first) ? -1 : index-1;
+				index++;
+				vehicle = vehicle.rearVehicle;
+			}
+			
+			evaluate(first, index);
+		}
+	}
+	
+	/**
+	 * Evaluates the model for a range of vehicles and stores the change in speed in the vehicles.
+	 * @param from Index of the first vehicle
+	 * @param to Index after the last vehicle
+	 */
+	void evaluate(int from, int to) {
+		
+		for (int i=from; i<to; i++) {
+			
+			NodeGIS vehicle = vehicles[i];
+			double v = speed[i];
+			double s = Double.POSITIVE_INFINITY;
+			
+			if (carFollowing) {
+				
+				// traffic light at the end of the road, if it is still possible to break before it
+				if (trafficLights && lightDistance[i]>v*v/(2*k*b)) {
+					s = lightDistance[i];
+					vehicle.v_delta = v;
+				}
+				
+				// vehicle in front on the same road
+				int front = leader[i];
+				if (front>=0) {
+					s = position[front] - length - position[i];
+					vehicle.v_delta = v - speed[front];
+				}
+			}
+			
+			double ratio = v/desiredSpeed[i];
+			double free = 1 - (ratio*ratio)*(ratio*ratio);
+			
+			if (s<Double.POSITIVE_INFINITY) {
+				double s_star = s_0 + (v*t_react + v*vehicle.v_delta/brakingTerm);
+				double interaction = s_star/s;
+				vehicle.dv = a * (free - interaction*interaction);
+			} else {
+				vehicle.dv = a * free;
+			}
+			vehicle.s = s;
+		}
+		
+	}
+	
+}
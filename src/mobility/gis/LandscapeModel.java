@@ -47,13 +47,30 @@ public class LandscapeModel {
 	List<RoadNode> destinations = new ArrayList<RoadNode>();
 	/** network of roads */
 	public RoadNetwork roadNetwork = null;
+	/** landmarks prepared for the road network by the requested number of landmarks (shared by the simulations using this landscape model) */
+	public Map<Integer, Landmarks> landmarks = new HashMap<Integer, Landmarks>();
+	
+	/**
+	 * Creates a copy of this landscape model with a copy of the road network (see RoadNetwork.copy()).
+	 * @return Copy of the landscape model
+	 */
+	public LandscapeModel copy() {
+		LandscapeModel copy = new LandscapeModel();
+		copy.roadNetwork = roadNetwork.copy();
+		Iterator<RoadNode> it = destinations.iterator();
+		while (it.hasNext()) {
+			copy.destinations.add(copy.roadNetwork.getNodes().get(it.next().id));
+		}
+		return copy;
+	}
 	
 	/**
 	 * Returns a random destination point in the map
+	 * @param rng Random number generator of the node
 	 * @return Intersection which is next to the random destination point
 	 */
-	public RoadNode getNextDestination() {
-		return destinations.get(Simulator.rng.nextInt(destinations.size()));
+	public RoadNode getNextDestination(Random rng) {
+		return destinations.get(rng.nextInt(destinations.size()));
 	}
 	
 	
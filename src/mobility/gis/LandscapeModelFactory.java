@@ -61,15 +61,13 @@ public final class LandscapeModelFactory {
 		/** collection of roads (edges) */
 		Collection<RoadEdge> edges = new ArrayList<RoadEdge>();
 		
-		/** list of lines following the course of the road */
-		LinkedList<Line> segments = new LinkedList<Line>();
-		/** list of lines following the course of the road in the opposite direction */
-		LinkedList<Line> segmentsOpposite = new LinkedList<Line>();
+		/** coordinates of the points following the course of the road */
+		double[] pointsX = new double[16];
+		double[] pointsY = new double[16];
+		int points = 0;
 		
 		int type = 0;
     	int identifier = 0;
-    	
-		double length = 0;
 		
 		try {
 	        BufferedReader in = new BufferedReader(new FileReader(file));
@@ -80,21 +78,19 @@ public final class LandscapeModelFactory {
 	        	
 	        	if (str.equals("<Road>")) {
 	        		// start of new road
-	        		segments.clear();
-	        		segmentsOpposite.clear();
-	        		length = 0;
+	        		points = 0;
 	        		
 	        	} else if (str.equals("</Road>")) {
 	        		// end of road
 	        		
 	        		// start point
-	        		double x1 = segments.get(0).x1;
-	        		double y1 = segments.get(0).y1;
+	        		double x1 = pointsX[0];
+	        		double y1 = pointsY[0];
 	        		
 	        		
 	        		// end point
-	        		double x2 = segments.get(segments.size()-1).x2;
-	        		double y2 = segments.get(segments.size()-1).y2;
+	        		double x2 = pointsX[points-1];
+	        		double y2 = pointsY[points-1];
 	        		
 	        		
 	        		// generate node keys
@@ -121,13 +117,16 @@ public final class LandscapeModelFactory {
 						nodes.add(node2);
 					}
 	        		
+					// the geometry is stored once and shared by both directions
+					RoadGeometry geometry = new RoadGeometry(Arrays.copyOf(pointsX, points), Arrays.copyOf(pointsY, points));
+					
 					// add directed edge
-					RoadEdge edge = new RoadEdge(node1, node2, segments, length);
+					RoadEdge edge = new RoadEdge(node1, node2, geometry, false);
 					edge.identifier = identifier;
 					edge.type = type;
 					edges.add(edge);
 					// add directed edge for the opposite direction
-					RoadEdge edge2 = new RoadEdge(node2, node1, segmentsOpposite, length);
+					RoadEdge edge2 = new RoadEdge(node2, node1, geometry, true);
 					edge2.identifier=identifier;
 					edge2.type = type;
 					edges.add(edge2);
@@ -182,11 +181,20 @@ public final class LandscapeModelFactory {
 					double y2 = Double.parseDouble(column[5]);
 					
 					type = Integer.parseInt(column[1]);
-					Line line = new Line(x1,y1,x2,y2);
-					length+=line.length;
-					// add road segment
-					segments.addLast(line);
-					segmentsOpposite.addFirst(new Line(x2,y2,x1,y1));
+					
+					if (points+2>pointsX.length) {
+						pointsX = Arrays.copyOf(pointsX, 2*pointsX.length);
+						pointsY = Arrays.copyOf(pointsY, 2*pointsY.length);
+					}
+					// add road segment, the start point is shared with the end point of the previous segment
+					if (points==0) {
+						pointsX[points] = x1;
+						pointsY[points] = y1;
+						points++;
+					}
+					pointsX[points] = x2;
+					pointsY[points] = y2;
+					points++;
 					
 				}
 				
@@ -209,50 +217,20 @@ public final class LandscapeModelFactory {
 		// post-processing of the graph
 		// check if each node is reachable from all other nodes in the graph
 		// (which is typically for a road network)
-		Iterator<RoadNode> nodeIterator = model.roadNetwork.getNodes().iterator();
-		
-		int reachableNodes[] = new int[model.roadNetwork.getNodes().size()];
+		// (the number of reachable nodes is calculated from the strongly connected components of the graph)
+		int reachableNodes[] = model.roadNetwork.getGraph().getReachableCounts();
 		
-		int position = 0;
 		int maxValue = 0;
-		
-		while (nodeIterator.hasNext()) {
-			
-			RoadNode start = nodeIterator.next();
-			
-			HashSet<RoadNode> visitedNodes = new HashSet<RoadNode>();
-			LinkedList<RoadNode> nextNodes = new LinkedList<RoadNode>();
-			
-			nextNodes.add(start);
-			
-			RoadNode current = null;
-			while ((current=nextNodes.poll())!=null) {
-				
-				Iterator<RoadEdge> it = current.getOutEdges().iterator();
-				while (it.hasNext()) {
-					RoadEdge edge = it.next();
-					RoadNode next = edge.getOtherNode(current);
-					
-					if (!visitedNodes.contains(next) && !nextNodes.contains(next)) {
-						nextNodes.add(next);
-					}
-					
-				}
-				
-				visitedNodes.add(current);
-			}
-			
-			reachableNodes[position] = visitedNodes.size();
-			if (reachableNodes[position]>maxValue) maxValue = reachableNodes[position];
-			
-			position++;
+		for (int i=0; i<reachableNodes.length; i++) {
+			if (reachableNodes[i]>maxValue) maxValue = reachableNodes[i];
 		}
 		
 		System.out.println("Maximum number of reachable nodes: " + maxValue);
 		
-		nodeIterator = model.roadNetwork.getNodes().iterator();
+		Iterator<RoadNode> nodeIterator = model.roadNetwork.getNodes().iterator();
+		HashSet<RoadEdge> removedEdges = new HashSet<RoadEdge>();
 		
-		position = 0;
+		int position = 0;
 		
 		while (nodeIterator.hasNext()) {
 			
@@ -267,13 +245,13 @@ public final class LandscapeModelFactory {
 					
 					RoadEdge edge = edgeIterator.next();
 					System.out.println("removing edge: (" + edge.getStartNode().x + "," +  edge.getStartNode().y + ") <-> (" + edge.getEndNode().x + "," +  edge.getEndNode().y + ")");
-					model.roadNetwork.getEdges().remove(edge);
+					removedEdges.add(edge);
 				}
 				node.getInEdges().clear();
 				
 				edgeIterator = node.getOutEdges().iterator();
 				while (edgeIterator.hasNext()) {
-					model.roadNetwork.getEdges().remove(edgeIterator.next());
+					removedEdges.add(edgeIterator.next());
 				}
 				node.getOutEdges().clear();
 				
@@ -287,6 +265,12 @@ public final class LandscapeModelFactory {
 			position++;
 		}
 		
+		model.roadNetwork.getEdges().removeAll(removedEdges);
+		
+		// renumber the remaining intersections and roads
+		model.roadNetwork.setNodes(model.roadNetwork.getNodes());
+		model.roadNetwork.setEdges(model.roadNetwork.getEdges());
+		
 		// statistics
 		/** total length of roads*/
 		double totalRoadLength = 0;
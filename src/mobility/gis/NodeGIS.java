@@ -32,9 +32,14 @@
 package mobility.gis;
 
 
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Future;
+
 import event.*;
 import simulator.*;
 import mobility.MobileNode;
+import mobility.Vehicle;
 import model.*;
 
 /**
@@ -42,11 +47,19 @@ import model.*;
  * @author psommer
  *
  */
-public class NodeGIS extends MobileNode {
+public class NodeGIS extends Vehicle {
 	
 	
 	Path route = null;
 	RoadNode destination = null;
+	/** weights version of the road network for which the route has been calculated */
+	int routeVersion = 0;
+	/** destination of the next trip, selected on the last road of the route (null if not selected yet) */
+	RoadNode nextDestination = null;
+	/** route of the next trip calculated by the route planner (null if not submitted) */
+	Future<Path> nextRoute = null;
+	/** weights version of the road network when the route of the next trip has been submitted */
+	int nextRouteVersion = 0;
 	
 	/** current change in speed */
 	double dv = 0;
@@ -76,12 +89,17 @@ public class NodeGIS extends MobileNode {
 	Position lastPositionXY = new Position();
 	
 
+	/** mobility model of this node */
+	GISModel model = null;
+	
 	/**
 	 * Creates a new mobile node implementing the GIS based mobility model
+	 * @param model Mobility model of this node
 	 * @param id Node identifier
 	 */
-	public NodeGIS(int id) {
-		super(id);
+	public NodeGIS(GISModel model, int id) {
+		super(model.context, id);
+		this.model = model;
 	}
 	
 	
@@ -91,7 +109,7 @@ public class NodeGIS extends MobileNode {
 	public void warmup() {
 		
 		// select a start node
-		RoadNode start = GISModel.landscape.getNextDestination();
+		RoadNode start = model.landscape.getNextDestination(rng);
 		
 		lastPositionXY.x = start.x;
 		lastPositionXY.y = start.y;
@@ -101,27 +119,49 @@ public class NodeGIS extends MobileNode {
 		while (route==null) {
 			// find a destination node
 			while (destination==start) {
-				destination = GISModel.landscape.getNextDestination();
+				destination = model.landscape.getNextDestination(rng);
 			}
 			
 			// find the shortest path between source and destination
-			route = GISModel.landscape.roadNetwork.getPath(start, destination);
+			route = model.landscape.roadNetwork.getPath(start, destination);
 		}
+		routeVersion = model.landscape.roadNetwork.getWeightsVersion();
 		
 		// set the current road
 		road = route.getNextRoad();
 		
 		// start position
-		position = road.length*Simulator.rng.nextDouble();
+		position = road.length*rng.nextDouble();
 		speed = 0;
 		// enter the current road
 		road.update(this);
 		// set desired speed
-		v_max = road.maxSpeed*(Simulator.rng.nextDouble()*0.05 + 0.95);
+		v_max = road.maxSpeed*(rng.nextDouble()*0.05 + 0.95);
 		
+		if (model.planner!=null && !route.hasNextRoad()) planTrip();
 		
 	}
 	
+	/**
+	 * Selects the destination of the next trip and submits its route to the route planner. 
+	 * The random numbers are drawn in the same order as if the trip was selected at the destination.
+	 */
+	void planTrip() {
+		nextDestination = destination;
+		while (nextDestination==destination) {
+			nextDestination = model.landscape.getNextDestination(rng);
+		}
+		submitTrip();
+	}
+	
+	/**
+	 * Submits the route of the selected next trip to the route planner
+	 */
+	void submitTrip() {
+		nextRoute = model.planner.submit(destination, nextDestination);
+		nextRouteVersion = model.landscape.roadNetwork.getWeightsVersion();
+	}
+	
 	
 	public void init() {
 		// generate simulation join event
@@ -139,13 +179,13 @@ public class NodeGIS extends MobileNode {
 		
 		s = Double.POSITIVE_INFINITY;
 		
-		if (GISModel.enableCarFollowing) {
+		if (model.enableCarFollowing) {
 			
 			MobileNode frontVehicle = null;
 			
 			// check for other vehicles in front of this vehicle on the same street or on other streets on the route
 			
-			if (GISModel.enableTrafficLights) {
+			if (model.enableTrafficLights) {
 				
 				double trafficLightDistance = Double.POSITIVE_INFINITY;
 				
@@ -197,32 +237,50 @@ public class NodeGIS extends MobileNode {
 	}
 	
 	
-	public boolean next() {
+	public void advance() {
+		
+		nextRoad = road;
+		leftRoads.clear();
 			
 		// update the current speed
-		speed += dv*Simulator.step;
+		speed += dv*context.step;
 		
 		if (speed<0.01) speed=0;
 		
 		// update the current position
-		position += speed*Simulator.step;
+		nextPosition = position + speed*context.step;
+		
+	}
+	
+	
+	public void changeRoad() {
 		
 		// check if the node is still within this street
-		while (position>=road.length) {
+		while (nextPosition>=nextRoad.length) {
 			
 			// update position
-			position-=road.length;
+			nextPosition-=nextRoad.length;
 			
 			// remove car from the current street
-			road.remove(this);
+			leftRoads.add(nextRoad);
+			
+			// recalculate the remaining route if the road weights have changed
+			if (routeVersion!=model.landscape.roadNetwork.getWeightsVersion()) {
+				routeVersion = model.landscape.roadNetwork.getWeightsVersion();
+				RoadNode start = nextRoad.getEndNode();
+				if (start!=destination) {
+					Path path = model.landscape.roadNetwork.getPath(start, destination);
+					if (path!=null) route = path;
+				}
+			}
 			
 			// find next street on the route 
 			
 			if (route.hasNextRoad()) {
 				
-				road = route.getNextRoad();
+				nextRoad = route.getNextRoad();
 				// set desired speed
-				v_max = road.maxSpeed*(Simulator.rng.nextDouble()*0.05 + 0.95);
+				v_max = nextRoad.maxSpeed*(rng.nextDouble()*0.05 + 0.95);
 				
 			} else {
 				
@@ -230,58 +288,126 @@ public class NodeGIS extends MobileNode {
 				// destination reached, calculate a new route
 				RoadNode start = destination;
 				
-				// issue join event
-				
-				destination = start;
 				// unset route
 				route=null;
 				
+				if (nextDestination!=null) {
+					// next trip already selected, the route from the planner is used if the weights have not changed since
+					destination = nextDestination;
+					if (nextRoute!=null && nextRouteVersion==model.landscape.roadNetwork.getWeightsVersion()) {
+						route = model.planner.getPath(nextRoute, start, destination);
+					} else {
+						route = model.landscape.roadNetwork.getPath(start, destination);
+					}
+					nextDestination = null;
+					nextRoute = null;
+				}
+				
 				while (route==null) {
 					// find a destination node
 					while (destination==start) {
-						destination = GISModel.landscape.getNextDestination();
+						destination = model.landscape.getNextDestination(rng);
 					}
 					// find the shortest path between source and destination
-					route = GISModel.landscape.roadNetwork.getPath(start, destination);
+					route = model.landscape.roadNetwork.getPath(start, destination);
 				}
+				routeVersion = model.landscape.roadNetwork.getWeightsVersion();
 				
-				road = route.getNextRoad();
+				nextRoad = route.getNextRoad();
 				// set desired speed
-				v_max = road.maxSpeed*(Simulator.rng.nextDouble()*0.05 + 0.95);
+				v_max = nextRoad.maxSpeed*(rng.nextDouble()*0.05 + 0.95);
 				
 			}
 			
+			// calculate the next trip in the background while driving on the last road
+			if (model.planner!=null && nextDestination==null && !route.hasNextRoad()) planTrip();
+			
 		}
 		
+	}
+	
+	
+	public void apply() {
+		
+		// remove car from the left streets
+		for (int i=0; i<leftRoads.size(); i++) {
+			leftRoads.get(i).remove(this);
+		}
+		
+		position = nextPosition;
+		road = nextRoad;
 		road.update(this);
-
 		
-		// determine the current position
+	}
+	
+	
+	public boolean report() {
 		
 		// transform the position relative to the street into a position on the map
-		Position positionXY = road.getPosition(this);
 		x = positionXY.x;
 		y = positionXY.y;
 		
 		// generate the next event
-		if (!GISModel.warmupPhase && Simulator.time<Simulator.duration) {
+		if (!model.warmupPhase && context.time<context.duration) {
 			
-			if (speed>0) addEvent(new Move(this, Simulator.time, lastPositionXY.x, lastPositionXY.y, positionXY.x, positionXY.y, speed, Simulator.step));
-			else addEvent(new Pause(this, Simulator.time, Simulator.step, positionXY.x, positionXY.y));
+			if (speed>0) addEvent(new Move(this, context.time, lastPositionXY.x, lastPositionXY.y, positionXY.x, positionXY.y, speed, context.step));
+			else addEvent(new Pause(this, context.time, context.step, positionXY.x, positionXY.y));
 		}
 		
 	
+		// swap the position objects of the last and the current step, the events only copy the coordinates
+		Position last = lastPositionXY;
 		lastPositionXY = positionXY;
+		positionXY = last;
 		
 		
-		return super.next();
+		return processEvents();
 		
 	}
 	
 	
+	public void writeState(DataOutputStream out) throws IOException {
+		super.writeState(out);
+		out.writeInt(destination.id);
+		out.writeInt(routeVersion);
+		out.writeInt(route.size());
+		for (int i=0; i<route.size(); i++) {
+			out.writeInt(route.getRoad(i).id);
+		}
+		out.writeInt(nextDestination!=null ? nextDestination.id : -1);
+		out.writeDouble(dv);
+		out.writeDouble(v_max);
+		out.writeDouble(v_delta);
+		out.writeDouble(s);
+		out.writeDouble(lastPositionXY.x);
+		out.writeDouble(lastPositionXY.y);
+	}
+	
+	
+	public void readState(DataInputStream in, RoadNetwork network) throws IOException {
+		super.readState(in, network);
+		destination = network.getNodes().get(in.readInt());
+		routeVersion = in.readInt();
+		int size = in.readInt();
+		int[] roads = new int[size];
+		for (int i=0; i<size; i++) {
+			roads[i] = in.readInt();
+		}
+		route = new Path(network.getEdges(), roads);
+		int next = in.readInt();
+		nextDestination = (next>=0) ? network.getNodes().get(next) : null;
+		nextRoute = null;
+		dv = in.readDouble();
+		v_max = in.readDouble();
+		v_delta = in.readDouble();
+		s = in.readDouble();
+		lastPositionXY = new Position(in.readDouble(), in.readDouble());
+	}
+	
+	
 	public void finish() {
-		addEvent(new Leave(this, Simulator.duration, x, y));
-		Simulator.removeNode(Simulator.duration, this);
+		addEvent(new Leave(this, context.duration, x, y));
+		context.removeNode(context.duration, this);
 		super.finish();
 	}
 	
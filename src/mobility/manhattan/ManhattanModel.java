@@ -48,7 +48,7 @@ public class ManhattanModel extends MobilityModel {
 
 
 	/** road graph */
-	static RoadNetwork roadNetwork = null;
+	RoadNetwork roadNetwork = null;
 	/** number of grid segments */
 	int segments = 15;
 	/** graph nodes */
@@ -56,17 +56,29 @@ public class ManhattanModel extends MobilityModel {
 	/** graph edges */
 	ArrayList<RoadEdge> graphEdges = new ArrayList<RoadEdge>();
 	/** indicates if the model is in the warmup phase */
-	static boolean warmupPhase = true;
+	boolean warmupPhase = true;
 	/** maximum acceleration/deceleration */
-	static double acceleration = 0.1;
+	double acceleration = 0.1;
 	/** decelerate if distance to front vehicle is below this value */
-	static double securityDistance = 25;
+	double securityDistance = 25;
 	/** minimum speed */
-	static double speedMin = 10;
+	double speedMin = 10;
 	/** maximum speed */
-	static double speedMax = 14;
+	double speedMax = 14;
+	/** parallel update of the vehicles (null for sequential update) */
+	ParallelEngine engine = null;
+	/** file for the snapshot of the state after the warm-up phase (null if no snapshot is used) */
+	String snapshotFile = null;
 	
 
+	/**
+	 * Creates the Manhattan mobility model
+	 * @param context Simulation which uses this mobility model
+	 */
+	public ManhattanModel(SimulationContext context) {
+		super(context);
+	}
+	
 	/**
 	 * Initializes the mobility model with the parameters defined by the Simulator.
 	 */
@@ -78,10 +90,10 @@ public class ManhattanModel extends MobilityModel {
 		// calculate the block length
 		int blockLength = 0;
 		
-		if (Simulator.parameters.containsKey("BLOCKS")) {
+		if (context.parameters.containsKey("BLOCKS")) {
 			try {
-				int blocks = Integer.valueOf(Simulator.parameters.getProperty("BLOCKS"));
-				blockLength = (int)Math.floor(Simulator.size/blocks);
+				int blocks = Integer.valueOf(context.parameters.getProperty("BLOCKS"));
+				blockLength = (int)Math.floor(context.size/blocks);
 				
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter BLOCKS: " + e.getMessage());
@@ -134,10 +146,10 @@ public class ManhattanModel extends MobilityModel {
 		System.out.println("Nodes: " + graphNodes.size() + ", Edges: " + graphEdges.size());
 		
 		
-		if (Simulator.parameters.containsKey("NODES")) {
+		if (context.parameters.containsKey("NODES")) {
 			int nodesNumber = 0;
 			try {
-				nodesNumber = Integer.valueOf(Simulator.parameters.getProperty("NODES"));
+				nodesNumber = Integer.valueOf(context.parameters.getProperty("NODES"));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter NODES: " + e.getMessage());
 			}
@@ -145,10 +157,10 @@ public class ManhattanModel extends MobilityModel {
 			// intialize nodes
 			System.out.println("Initialization of Manhattan model");
 			for (int i=1; i<=nodesNumber; i++) {
-				NodeManhattan node = new NodeManhattan(i);
+				NodeManhattan node = new NodeManhattan(this, i);
 				nodes.add(node);
 				node.warmup();
-				Simulator.uniqueNodes++;
+				context.uniqueNodes++;
 			}
 			
 		} else {
@@ -156,26 +168,47 @@ public class ManhattanModel extends MobilityModel {
 			return;
 		}
 
-		if (Simulator.parameters.containsKey("SPEED_MIN")) {
+		if (context.parameters.containsKey("SPEED_MIN")) {
 			try {
-				 speedMin = Double.valueOf(Simulator.parameters.getProperty("SPEED_MIN"));
+				 speedMin = Double.valueOf(context.parameters.getProperty("SPEED_MIN"));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter SPEED_MIN: " + e.getMessage());
 			}
 		}
 		
-		if (Simulator.parameters.containsKey("SPEED_MAX")) {
+		if (context.parameters.containsKey("SPEED_MAX")) {
 			try {
-				 speedMax = Double.valueOf(Simulator.parameters.getProperty("SPEED_MAX"));
+				 speedMax = Double.valueOf(context.parameters.getProperty("SPEED_MAX"));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter SPEED_MAX: " + e.getMessage());
 			}
 		}
 		
-		// warm-up phase
+		if (context.parameters.containsKey("THREADS")) {
+			try {
+				int threads = Integer.valueOf(context.parameters.getProperty("THREADS"));
+				if (threads!=1) engine = new ParallelEngine(threads);
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter THREADS: " + e.getMessage());
+			}
+		}
 		
-		for (int i=1; i<5000; i++) {
-			next();
+		if (context.parameters.containsKey("WARMUP_SNAPSHOT")) {
+			snapshotFile = context.parameters.getProperty("WARMUP_SNAPSHOT");
+		}
+		
+		// warm-up phase until a steady state is reached, skipped if the state after the warm-up is restored from a snapshot
+		WarmupMonitor warmup = new WarmupMonitor(context);
+		String snapshotKey = "MN NODES=" + nodes.size() + " SEED=" + context.seed + " SIMULATION_SIZE=" + context.size + " BLOCKS=" + context.parameters.getProperty("BLOCKS") + " SPEED_MIN=" + speedMin + " SPEED_MAX=" + speedMax + " " + warmup;
+		
+		if (snapshotFile!=null && context.snapshotPerKey) snapshotFile = Snapshot.getFile(snapshotFile, snapshotKey);
+		
+		// simulations with the same snapshot file wait until the first one has written it
+		synchronized (snapshotFile!=null ? Snapshot.getLock(snapshotFile) : this) {
+			if (snapshotFile==null || !Snapshot.load(snapshotFile, snapshotKey, roadNetwork, nodes)) {
+				warmup.run(this, roadNetwork);
+				if (snapshotFile!=null) Snapshot.save(snapshotFile, snapshotKey, roadNetwork, nodes);
+			}
 		}
 		
 		warmupPhase = false;
@@ -199,6 +232,12 @@ public class ManhattanModel extends MobilityModel {
 	 * Updates the model for the next sample point
 	 */
 	public void next() {
+		if (engine!=null) {
+			engine.prepare(nodes);
+			engine.next(nodes);
+			return;
+		}
+		
 		// prepare and update all nodes
 		Iterator<MobileNode> it = nodes.iterator(); 
 		while (it.hasNext()) {
@@ -217,6 +256,8 @@ public class ManhattanModel extends MobilityModel {
 	 * Called after the simulation to clean-up
 	 */
 	public void finish() {
+		if (engine!=null) engine.shutdown();
+		
 		Iterator<MobileNode> it = nodes.iterator(); 
 		while (it.hasNext()) {
 			MobileNode node = it.next();
@@ -33,24 +33,31 @@ package mobility.manhattan;
 import event.*;
 import simulator.*;
 import mobility.MobileNode;
+import mobility.Vehicle;
 import model.*;
+import java.io.*;
 import java.util.*;
 
 /**
  * Implementation of a node in the manhattan mobility model
  * @author      psommer
  */
-public class NodeManhattan extends MobileNode {
+public class NodeManhattan extends Vehicle {
 	
 	Position lastPositionXY = null;
 	double dv = 0;
 	
+	/** mobility model of this node */
+	ManhattanModel model = null;
+	
 	/**
 	 * Creates a new node implementing the Manhattan mobility model
+	 * @param model Mobility model of this node
 	 * @param id unique node identifier
 	 */
-	public NodeManhattan(int id) {
-		super(id);
+	public NodeManhattan(ManhattanModel model, int id) {
+		super(model.context, id);
+		this.model = model;
 	}
 	
 	
@@ -58,12 +65,12 @@ public class NodeManhattan extends MobileNode {
 		
 				
 		// select a start node
-		road = ManhattanModel.roadNetwork.getEdges().get(Simulator.rng.nextInt(ManhattanModel.roadNetwork.getEdges().size()));
-		position = Simulator.rng.nextDouble()*road.length;
+		road = model.roadNetwork.getEdges().get(rng.nextInt(model.roadNetwork.getEdges().size()));
+		position = rng.nextDouble()*road.length;
 		Position posXY= road.getPosition(this);
 		
 		lastPositionXY = posXY;
-		speed = (ManhattanModel.speedMax + ManhattanModel.speedMin)/2;
+		speed = (model.speedMax + model.speedMin)/2;
 		
 		road.update(this);
 		
@@ -77,11 +84,11 @@ public class NodeManhattan extends MobileNode {
 	
 	public void prepare() {
 			// update node velocity
-			dv = (2*Simulator.rng.nextDouble() - 1)*ManhattanModel.acceleration;
+			dv = (2*rng.nextDouble() - 1)*model.acceleration;
 			
 			// find preceeding driver
 			MobileNode preceedingDriver = road.getFrontVehicle(this);
-			if (preceedingDriver!=null && (preceedingDriver.position - position)<=ManhattanModel.securityDistance) {
+			if (preceedingDriver!=null && (preceedingDriver.position - position)<=model.securityDistance) {
 				// limit speed
 				if (preceedingDriver.speed<(speed+dv)) dv = preceedingDriver.speed - speed;		
 			} 
@@ -89,119 +96,145 @@ public class NodeManhattan extends MobileNode {
 	}
 	
 	
-	/**
-	 * Updates the node 
-	 */
-	public boolean next() {
+	public void advance() {
+		
+		nextRoad = road;
+		leftRoads.clear();
 		
 		speed+=dv;
-		if (speed<ManhattanModel.speedMin) speed = ManhattanModel.speedMin;
-		if (speed>ManhattanModel.speedMax) speed = ManhattanModel.speedMax;
+		if (speed<model.speedMin) speed = model.speedMin;
+		if (speed>model.speedMax) speed = model.speedMax;
 		
-		position+=speed*Simulator.step;
+		nextPosition = position + speed*context.step;
 		
-		//System.out.println("velocity: " + velocity);
+	}
+	
+	
+	public void changeRoad() {
 		
-		if (position>=road.length) {
-			// move into next road
-			
-			RoadEdge nextRoad = null;
-			
-			Iterator<RoadEdge> it = road.getEndNode().getOutEdges().iterator();
-			
-			int direction = Simulator.rng.nextInt(4);
-			
-			while (it.hasNext()) {
+		// move into next road
+		
+		nextRoad = null;
+		
+		Iterator<RoadEdge> it = road.getEndNode().getOutEdges().iterator();
+		
+		int direction = rng.nextInt(4);
+		
+		while (it.hasNext()) {
+		
+			RoadEdge outgoingRoad = it.next();
 			
-				RoadEdge outgoingRoad = it.next();
+			if (outgoingRoad.getEndNode()==road.getStartNode()) {
+				// street in the opposite direction
+				if (road.getEndNode().getOutEdges().size()==1) {
+					nextRoad = outgoingRoad;
+					break;
+				}
+			} else {
 				
-				if (outgoingRoad.getEndNode()==road.getStartNode()) {
-					// street in the opposite direction
-					if (road.getEndNode().getOutEdges().size()==1) {
+				if (direction<2) {
+					// go straight ahead
+					if (outgoingRoad.getEndNode().x==road.getStartNode().x || outgoingRoad.getEndNode().y==road.getStartNode().y) {
 						nextRoad = outgoingRoad;
 						break;
 					}
-				} else {
 					
-					if (direction<2) {
-						// go straight ahead
-						if (outgoingRoad.getEndNode().x==road.getStartNode().x || outgoingRoad.getEndNode().y==road.getStartNode().y) {
+				} else if (direction==2) {
+					// turn left
+					
+					if (road.getStartNode().x==road.getEndNode().x) {
+						// currently on a vertical street
+						if (road.getEndNode().x>outgoingRoad.getEndNode().x) {
+							nextRoad = outgoingRoad;
+							break;
+						}
+					} else {
+						// currently on a horizontal street
+						if (road.getEndNode().y>outgoingRoad.getEndNode().y) {
 							nextRoad = outgoingRoad;
 							break;
 						}
-						
-					} else if (direction==2) {
-						// turn left
-						
-						if (road.getStartNode().x==road.getEndNode().x) {
-							// currently on a vertical street
-							if (road.getEndNode().x>outgoingRoad.getEndNode().x) {
-								nextRoad = outgoingRoad;
-								break;
-							}
-						} else {
-							// currently on a horizontal street
-							if (road.getEndNode().y>outgoingRoad.getEndNode().y) {
-								nextRoad = outgoingRoad;
-								break;
-							}
+					}
+					
+				} else {
+					// turn right
+					
+					if (road.getStartNode().x==road.getEndNode().x) {
+						// currently on a vertical street
+						if (road.getEndNode().x<outgoingRoad.getEndNode().x) {
+							nextRoad = outgoingRoad;
+							break;
 						}
-						
 					} else {
-						// turn right
-						
-						if (road.getStartNode().x==road.getEndNode().x) {
-							// currently on a vertical street
-							if (road.getEndNode().x<outgoingRoad.getEndNode().x) {
-								nextRoad = outgoingRoad;
-								break;
-							}
-						} else {
-							// currently on a horizontal street
-							if (road.getEndNode().y<outgoingRoad.getEndNode().y) {
-								nextRoad = outgoingRoad;
-								break;
-							}
+						// currently on a horizontal street
+						if (road.getEndNode().y<outgoingRoad.getEndNode().y) {
+							nextRoad = outgoingRoad;
+							break;
 						}
-						
 					}
 					
 				}
 				
-				
-				
-				
-			} // while
+			}
 			
-			// remove car from current road
-			road.remove(this);
-			position = position - road.length;
 			
-			road = nextRoad;
-			road.update(this);
 			
 			
+		} // while
 			
+		leftRoads.add(road);
+		nextPosition = nextPosition - road.length;
 		
-		}
+	}
 	
-		Position posXY = road.getPosition(this);
+	
+	public void apply() {
+		
+		position = nextPosition;
+		
+		if (!leftRoads.isEmpty()) {
+			// remove car from current road
+			road.remove(this);
+			
+			road = nextRoad;
+			road.update(this);
+		}
 		
+	}
+	
+	
+	public boolean report() {
 		
 		// generate a new MOVE event
-		if (!ManhattanModel.warmupPhase && Simulator.time<Simulator.duration) addEvent(new Move(this, Simulator.time, lastPositionXY.x, lastPositionXY.y, posXY.x, posXY.y, speed));
+		if (!model.warmupPhase && context.time<context.duration) addEvent(new Move(this, context.time, lastPositionXY.x, lastPositionXY.y, positionXY.x, positionXY.y, speed));
 		
-		lastPositionXY = posXY;
+		// swap the position objects of the last and the current step, the events only copy the coordinates
+		Position last = lastPositionXY;
+		lastPositionXY = positionXY;
+		positionXY = last;
 		
-		return super.next();
+		return processEvents();
 	}	
 	
+	public void writeState(DataOutputStream out) throws IOException {
+		super.writeState(out);
+		out.writeDouble(dv);
+		out.writeDouble(lastPositionXY.x);
+		out.writeDouble(lastPositionXY.y);
+	}
+	
+	public void readState(DataInputStream in, RoadNetwork network) throws IOException {
+		super.readState(in, network);
+		dv = in.readDouble();
+		lastPositionXY = new Position(in.readDouble(), in.readDouble());
+	}
+	
 	/** 
 	 * Clean-up after the end of the simulation 
 	 **/
 	public void finish() {
-		addEvent(new Leave(this, Simulator.duration, x, y));
-		Simulator.removeNode(Simulator.duration, this);
+		addEvent(new Leave(this, context.duration, x, y));
+		context.removeNode(context.duration, this);
 		super.finish();
 	}
 	
@@ -63,23 +63,46 @@ public class MMTSModel extends MobilityModel {
 	double t1 = 0, x1 = 0, y1 = 0, x2 = 0, y2 = 0, t2 = 0, dt = 0;
 	int id = 0;
 	
-	public static HashSet<String> poiSet = new HashSet<String>();
+	public HashSet<String> poiSet = new HashSet<String>();
 	
+	/** update nodes only at their event boundaries instead of every sample time */
+	boolean eventDriven = false;
+	/** scheduler for the event-driven mode */
+	NodeScheduler scheduler = null;
 	
 	
 	
+	
+	/**
+	 * Creates the MMTS model
+	 * @param context Simulation which uses this mobility model
+	 */
+	public MMTSModel(SimulationContext context) {
+		super(context);
+	}
+	
 	public void init() {
 
 		
 		// open input reader for the traces file
 		try {
-	        input = new BufferedReader(new FileReader(Simulator.inputDirectory + "/mmts.dat"));
+	        input = new BufferedReader(new FileReader(context.inputDirectory + "/mmts.dat"));
 	        // read the first line in the file
 	    } catch (Exception e) {
 			System.err.println("MMTS trace file not found: " + e.getMessage());
 			System.exit(0);
 		}
 	    
+		if (context.parameters.containsKey("EVENT_DRIVEN")) {
+			try {
+				 eventDriven = (1==Integer.valueOf(context.parameters.getProperty("EVENT_DRIVEN")));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter EVENT_DRIVEN: " + e.getMessage());
+			}
+		}
+	    
+	    scheduler = new NodeScheduler(context, nodes);
+	    
 	    // read the first event
 	    readEvent();
 	    
@@ -129,17 +152,17 @@ public class MMTSModel extends MobilityModel {
 		
 		while (line!=null) {
 			
-			if (t1<=(Simulator.time + readahead)) {
+			if (t1<=(context.time + readahead)) {
 				
 				// process event
 				
 				if (id>nodeUniqueId) {
 					// create a new node
-					currentNode = new NodeMMTS(id);
+					currentNode = new NodeMMTS(this, id);
 						
 					nodes.add(currentNode);
 					currentNode.init();
-					Simulator.uniqueNodes++;
+					context.uniqueNodes++;
 					nodeUniqueId++;
 					
 					// generate simulation join event
@@ -150,7 +173,7 @@ public class MMTSModel extends MobilityModel {
 					currentNode = nodes.get(id-1);
 					
 					// check if node enters the simulation area (again)
-					if(x1==0.0 || x1==Simulator.size || y1==0.0 || y1==Simulator.size) {
+					if(x1==0.0 || x1==context.size || y1==0.0 || y1==context.size) {
 						currentNode.addEvent(new Join(currentNode, t1, x1, y1));
 						//System.out.println("Node enters simulation area again!");
 					}
@@ -162,6 +185,9 @@ public class MMTSModel extends MobilityModel {
 				Move move = new Move(currentNode, t1, x1, y1, x2, y2, velocity);
 				currentNode.addEvent(move);
 				
+				// the new events change the next update time of the node
+				if (eventDriven) scheduler.schedule(currentNode);
+				
 				// read the next event in the file
 				if (!readEvent()) break;
 				
@@ -174,6 +200,17 @@ public class MMTSModel extends MobilityModel {
 		}	
 			
 						
+		if (eventDriven) {
+			// only nodes with an event boundary since the last sample point execute their next events
+			Iterator<MobileNode> it = scheduler.getNodesToUpdate(context.time).iterator();
+			while (it.hasNext()) {
+				MobileNode current = it.next();
+				current.next();
+				scheduler.schedule(current);
+			}
+			return;
+		}
+		
 		// let nodes execute their next events
 		Iterator<MobileNode> it = nodes.iterator();
 		while (it.hasNext()) {
@@ -38,8 +38,12 @@ import event.*;
 
 public class NodeMMTS extends MobileNode {
 	
-	public NodeMMTS(int id) {
-		super(id);
+	/** mobility model of this node */
+	MMTSModel model = null;
+	
+	public NodeMMTS(MMTSModel model, int id) {
+		super(model.context, id);
+		this.model = model;
 	}
 	
 	@Override
@@ -52,15 +56,24 @@ public class NodeMMTS extends MobileNode {
 		
 		// node leaves the simulation if it is more than 2 seconds paused
 		
-		if (currentEvent!=null && lastEvent.type!=Event.LEAVE && lastEventEndTime<(Simulator.time + 5)) {
+		if (currentEvent!=null && lastEvent.type!=Event.LEAVE && lastEventEndTime<(context.time + 5)) {
 			Move lastMoveEvent = (Move) lastEvent;
 			addEvent(new Leave(this, lastEventEndTime, lastMoveEvent.moveToX, lastMoveEvent.moveToY));
-			MMTSModel.poiSet.add(String.format("%.0f %.0f %d", lastMoveEvent.moveToX, lastMoveEvent.moveToY, 1));
+			model.poiSet.add(String.format("%.0f %.0f %d", lastMoveEvent.moveToX, lastMoveEvent.moveToY, 1));
 		}
 		
         return super.next();
 	}
 	
+	@Override
+	public double getNextUpdateTime() {
+		double time = super.getNextUpdateTime();
+		// the LEAVE event is generated up to 5 seconds before the last event ends 
+		// (one sample step earlier to be on the safe side)
+		if (currentEvent!=null && lastEvent.type!=Event.LEAVE) time = Math.min(time, lastEventEndTime - 5 - context.step);
+		return time;
+	}
+	
 	public void finish() {
 		super.finish();
 	}
@@ -43,31 +43,36 @@ import event.*;
  */
 public class NodeRWP extends MobileNode {
 	
+	/** mobility model of this node */
+	RandomWaypointModel model = null;
+	
 	/**
 	 * Creates a new node implementing the random waypoint mobility model
+	 * @param model Mobility model of this node
 	 * @param id unique node identifier
 	 */
-	public NodeRWP(int id) {
-		super(id);
+	public NodeRWP(RandomWaypointModel model, int id) {
+		super(model.context, id);
+		this.model = model;
 	}
 	
 	public void init() {
 		
-		if (Simulator.rng.nextDouble()<RandomWaypointModel.probabilityPause) {
+		if (rng.nextDouble()<model.probabilityPause) {
 			// node starts paused
 			
 			// determine length of initial pause
 			double initWaitTime = 0;
 			
 			// u ~ uniform (0,1)
-			double u = Simulator.rng.nextDouble();
-			double threshold = RandomWaypointModel.waitTimeDistribution.getMin()/RandomWaypointModel.waitTimeDistribution.getMean();
+			double u = rng.nextDouble();
+			double threshold = model.waitTimeDistribution.getMin()/model.waitTimeDistribution.getMean();
 			
-			if (u<threshold) initWaitTime = u*RandomWaypointModel.waitTimeDistribution.getMean();
-			else initWaitTime = RandomWaypointModel.waitTimeDistribution.getMax()-Math.sqrt((1-u)*(RandomWaypointModel.waitTimeDistribution.getMax()*RandomWaypointModel.waitTimeDistribution.getMax() - RandomWaypointModel.waitTimeDistribution.getMin()*RandomWaypointModel.waitTimeDistribution.getMin()));
+			if (u<threshold) initWaitTime = u*model.waitTimeDistribution.getMean();
+			else initWaitTime = model.waitTimeDistribution.getMax()-Math.sqrt((1-u)*(model.waitTimeDistribution.getMax()*model.waitTimeDistribution.getMax() - model.waitTimeDistribution.getMin()*model.waitTimeDistribution.getMin()));
 			
 			// initial position
-			Event join = new Join(this, 0.0, Simulator.rng.nextDouble()*Simulator.size, Simulator.rng.nextDouble()*Simulator.size);
+			Event join = new Join(this, 0.0, rng.nextDouble()*context.size, rng.nextDouble()*context.size);
 			addEvent(join);
 			
 			Pause pause = new Pause(this, 0.0, initWaitTime, join.x, join.y);
@@ -83,35 +88,35 @@ public class NodeRWP extends MobileNode {
 			
 			while (reject) {
 				
-				double x1 = Simulator.rng.nextDouble();
-				double x2 = Simulator.rng.nextDouble();
-				double y1 = Simulator.rng.nextDouble();
-				double y2 = Simulator.rng.nextDouble();
+				double x1 = rng.nextDouble();
+				double x2 = rng.nextDouble();
+				double y1 = rng.nextDouble();
+				double y2 = rng.nextDouble();
 				
 				
-				double r = Math.sqrt((x2-x1)*(x2-x1) + (y2-y1)*(y2-y1))/RandomWaypointModel.maxDistanceNormalized; 
-				double u = Simulator.rng.nextDouble();
+				double r = Math.sqrt((x2-x1)*(x2-x1) + (y2-y1)*(y2-y1))/model.maxDistanceNormalized; 
+				double u = rng.nextDouble();
 				
 				
 				if (u<r) {
 					// accept initial positions
 					reject = false;
 					
-					u = Simulator.rng.nextDouble();
+					u = rng.nextDouble();
 					// select a random position on the line between (x1,y1) and (x2,y2)
 					double initX = u*x1 + (1-u)*x2;
 					double initY = u*y1 + (1-u)*y2;
 					
 					// initial speed
-					u = Simulator.rng.nextDouble();
-					double initSpeed = Math.pow(RandomWaypointModel.velocityDistribution.getMax(), u)/Math.pow(RandomWaypointModel.velocityDistribution.getMin(), u-1);
+					u = rng.nextDouble();
+					double initSpeed = Math.pow(model.velocityDistribution.getMax(), u)/Math.pow(model.velocityDistribution.getMin(), u-1);
 					
 					// node joins the simulation
-					Join join = new Join(this, 0.0, Simulator.size*initX, Simulator.size*initY);
+					Join join = new Join(this, 0.0, context.size*initX, context.size*initY);
 					addEvent(join);
 					
 					// node movement
-					Move move = new Move(this, 0.0, join.x, join.y, Simulator.size*x2, Simulator.size*y2, initSpeed);
+					Move move = new Move(this, 0.0, join.x, join.y, context.size*x2, context.size*y2, initSpeed);
 					addEvent(move);
 					
 				}
@@ -126,20 +131,20 @@ public class NodeRWP extends MobileNode {
 	public void prepare() {
 		
 		// generate new events until the current simulation time (if necessary)
-		while (lastEventEndTime<=Simulator.time) {
+		while (lastEventEndTime<=context.time) {
 			
 			// generate the next event
 			if (lastEvent!=null && lastEvent.type==Event.MOVE) {
 				
 				// currently moving -> generate a new PAUSE event
 				Move move  = (Move)lastEvent;
-				Pause pause = new Pause(this, lastEventEndTime, RandomWaypointModel.waitTimeDistribution.nextValue(), move.moveToX, move.moveToY);
+				Pause pause = new Pause(this, lastEventEndTime, model.waitTimeDistribution.nextValue(rng), move.moveToX, move.moveToY);
 				addEvent(pause);
 				
 			} else if (lastEvent!=null && lastEvent.type==Event.PAUSE) {
 				
 				// generate a new MOVEMENT event
-				Move move = new Move(this, lastEventEndTime, lastEvent.x, lastEvent.y, Simulator.size*Simulator.rng.nextDouble(), Simulator.size*Simulator.rng.nextDouble(), RandomWaypointModel.velocityDistribution.nextValue());
+				Move move = new Move(this, lastEventEndTime, lastEvent.x, lastEvent.y, context.size*rng.nextDouble(), context.size*rng.nextDouble(), model.velocityDistribution.nextValue(rng));
 				addEvent(move);
 				
 			}
@@ -152,9 +157,14 @@ public class NodeRWP extends MobileNode {
 		return super.next();
 	}
 	
+	public double getNextUpdateTime() {
+		// the next event is generated when the last event has finished
+		return Math.min(super.getNextUpdateTime(), lastEventEndTime);
+	}
+	
 	public void finish() {
-		addEvent(new Leave(this, Simulator.duration, x, y));
-		Simulator.removeNode(Simulator.duration, this);
+		addEvent(new Leave(this, context.duration, x, y));
+		context.removeNode(context.duration, this);
 		super.finish();
 	}
 	
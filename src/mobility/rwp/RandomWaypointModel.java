@@ -47,16 +47,28 @@ import java.util.*;
 public final class RandomWaypointModel extends MobilityModel {
 
 	/** distribution of the node velocity */
-	static Distribution velocityDistribution = null;
+	Distribution velocityDistribution = null;
 	/** distribution of the pause time */
-	static Distribution waitTimeDistribution = null;
+	Distribution waitTimeDistribution = null;
 	
 	/** probability that node starts being paused */
-	static double probabilityPause = 0;
+	double probabilityPause = 0;
 	/** maximum (normalized) distance between two nodes in the simulation */
-	static double maxDistanceNormalized = Math.sqrt(2);
+	double maxDistanceNormalized = Math.sqrt(2);
+	/** update nodes only at their event boundaries instead of every sample time */
+	boolean eventDriven = false;
+	/** scheduler for the event-driven mode */
+	NodeScheduler scheduler = null;
 	
 	
+	/**
+	 * Creates the random waypoint mobility model
+	 * @param context Simulation which uses this mobility model
+	 */
+	public RandomWaypointModel(SimulationContext context) {
+		super(context);
+	}
+	
 	/**
 	 * Initializes the random waypoint mobility model with the parameters defined by the simulation.
 	 */
@@ -66,40 +78,48 @@ public final class RandomWaypointModel extends MobilityModel {
 		double speedMin = 0, speedMax = 0, pauseMin = 0, pauseMax = 0;
 		
 		
-		if (Simulator.parameters.containsKey("SPEED_MIN")) {
+		if (context.parameters.containsKey("SPEED_MIN")) {
 			try {
-				 speedMin = Double.valueOf(Simulator.parameters.getProperty("SPEED_MIN"));
+				 speedMin = Double.valueOf(context.parameters.getProperty("SPEED_MIN"));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter SPEED_MIN: " + e.getMessage());
 			}
 		}
 		
-		if (Simulator.parameters.containsKey("SPEED_MAX")) {
+		if (context.parameters.containsKey("SPEED_MAX")) {
 			try {
-				 speedMax = Double.valueOf(Simulator.parameters.getProperty("SPEED_MAX"));
+				 speedMax = Double.valueOf(context.parameters.getProperty("SPEED_MAX"));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter SPEED_MAX: " + e.getMessage());
 			}
 		}
 		
-		if (Simulator.parameters.containsKey("PAUSE_MIN")) {
+		if (context.parameters.containsKey("PAUSE_MIN")) {
 			try {
-				 pauseMin = Double.valueOf(Simulator.parameters.getProperty("PAUSE_MIN"));
+				 pauseMin = Double.valueOf(context.parameters.getProperty("PAUSE_MIN"));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter PAUSE_MIN: " + e.getMessage());
 			}
 		}
 		
-		if (Simulator.parameters.containsKey("PAUSE_MAX")) {
+		if (context.parameters.containsKey("PAUSE_MAX")) {
 			try {
-				 pauseMax = Double.valueOf(Simulator.parameters.getProperty("PAUSE_MAX"));
+				 pauseMax = Double.valueOf(context.parameters.getProperty("PAUSE_MAX"));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter PAUSE_MAX: " + e.getMessage());
 			}
 		}
 			
-		velocityDistribution = new UniformDistribution(speedMin, speedMax, Simulator.seed);
-		waitTimeDistribution = new UniformDistribution(pauseMin, pauseMax, Simulator.seed);
+		if (context.parameters.containsKey("EVENT_DRIVEN")) {
+			try {
+				 eventDriven = (1==Integer.valueOf(context.parameters.getProperty("EVENT_DRIVEN")));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter EVENT_DRIVEN: " + e.getMessage());
+			}
+		}
+			
+		velocityDistribution = new UniformDistribution(speedMin, speedMax, context.seed);
+		waitTimeDistribution = new UniformDistribution(pauseMin, pauseMax, context.seed);
 		
 		
 		// steady-state distribution initialization
@@ -117,27 +137,36 @@ public final class RandomWaypointModel extends MobilityModel {
 		//System.out.println("PDF(mean(v)): " + model.velocityDistribution.getPDF(model.velocityDistribution.getMean()));
 		//System.out.println("Mean of 1/v: " + meanInverseVelocity);
 		
-		probabilityPause = waitTimeDistribution.getMean()/(waitTimeDistribution.getMean() + 0.521405*Simulator.size*meanInverseVelocity);
+		probabilityPause = waitTimeDistribution.getMean()/(waitTimeDistribution.getMean() + 0.521405*context.size*meanInverseVelocity);
 		
 		//System.out.println("Probability of node being paused: " + probabilityPause);
 		
 		
-		if (Simulator.parameters.containsKey("NODES")) {
+		if (context.parameters.containsKey("NODES")) {
 			int nodesNumber = 0;
 			try {
-				nodesNumber = Integer.valueOf(Simulator.parameters.getProperty("NODES"));
+				nodesNumber = Integer.valueOf(context.parameters.getProperty("NODES"));
 			} catch (Exception e) {
 				System.err.println("Error parsing parameter NODES: " + e.getMessage());
 			}
 			
 			// intialize nodes
 			System.out.println("Initialization of Random Waypoint model");
-			Simulator.uniqueNodes = 0;
+			context.uniqueNodes = 0;
 			for (int i=1; i<=nodesNumber; i++) {
-				NodeRWP node = new NodeRWP(i);
+				NodeRWP node = new NodeRWP(this, i);
 				node.init();
 				nodes.add(node);
-				Simulator.uniqueNodes++;
+				context.uniqueNodes++;
+			}
+			
+			// schedule the first update of all nodes
+			if (eventDriven) {
+				scheduler = new NodeScheduler(context, nodes);
+				Iterator<MobileNode> it = nodes.iterator();
+				while (it.hasNext()) {
+					scheduler.schedule(it.next());
+				}
 			}
 			
 			
@@ -151,6 +180,19 @@ public final class RandomWaypointModel extends MobilityModel {
 	 * Updates the model for the next sample point
 	 */
 	public void next() {
+		
+		if (eventDriven) {
+			// prepare and update nodes with an event boundary since the last sample point
+			Iterator<MobileNode> it = scheduler.getNodesToUpdate(context.time).iterator(); 
+			while (it.hasNext()) {
+				MobileNode node = it.next();
+				node.prepare();
+				node.next();
+				scheduler.schedule(node);
+			}
+			return;
+		}
+		
 		// prepare and update all nodes
 		Iterator<MobileNode> it = nodes.iterator(); 
 		while (it.hasNext()) {
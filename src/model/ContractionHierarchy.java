@@ -0,0 +1,767 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package model;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * ContractionHierarchy speeds up shortest path queries on large road networks.
+ * 
+ * In a preprocessing step, all intersections are contracted one after the other (ordered by the number 
+ * of shortcuts they require). When an intersection is contracted, shortcuts are added between its neighbours 
+ * if the path via the intersection is the only shortest path between them. The rank of an intersection is 
+ * its position in the contraction order. A query runs a bidirectional Dijkstra search which only follows 
+ * roads and shortcuts towards intersections with a higher rank, the shortcuts of the resulting path are 
+ * unpacked into the original roads.
+ * 
+ * The hierarchy is bound to the identifiers of the intersections and roads of the road network 
+ * and can be saved to a file to skip the preprocessing in later simulation runs.
+ * @author psommer
+ *
+ */
+public class ContractionHierarchy {
+
+	/** file identifier */
+	static final int magic = 0x474D4348;
+	/** file format version */
+	static final int version = 1;
+	/** maximum number of settled intersections in a witness search */
+	static final int witnessLimit = 500;
+	/** maximum number of settled intersections in a witness search to estimate the priority of an intersection */
+	static final int estimateLimit = 50;
+	
+	/** road network */
+	RoadNetwork network = null;
+	/** number of intersections */
+	int nodeCount = 0;
+	/** fingerprint of the roads of the network */
+	long fingerprint = 0;
+	/** rank of each intersection in the contraction order */
+	int[] rank = null;
+	
+	/** number of arcs (roads and shortcuts) */
+	int arcCount = 0;
+	/** start intersection of each arc */
+	int[] arcFrom = new int[16];
+	/** end intersection of each arc */
+	int[] arcTo = new int[16];
+	/** weight of each arc */
+	double[] arcWeight = new double[16];
+	/** road of each arc (-1 for shortcuts) */
+	int[] arcEdge = new int[16];
+	/** first arc of each shortcut (-1 for roads) */
+	int[] arcFirst = new int[16];
+	/** second arc of each shortcut (-1 for roads) */
+	int[] arcSecond = new int[16];
+	
+	/** index of the first upward arc of each intersection in upArcs */
+	int[] upStart = null;
+	/** arcs leading to an intersection with a higher rank, grouped by start intersection */
+	int[] upArcs = null;
+	/** index of the first downward arc of each intersection in downArcs */
+	int[] downStart = null;
+	/** arcs coming from an intersection with a higher rank, grouped by end intersection */
+	int[] downArcs = null;
+	
+	/** query state for each thread */
+	ThreadLocal<Query> queries = null;
+	
+	
+	/**
+	 * Query holds the state of the bidirectional search of a thread
+	 * @author psommer
+	 *
+	 */
+	static class Query {
+		/** number of the current query, the query state with another number is invalid */
+		int epoch = 0;
+		/** query in which the forward state of an intersection has been set */
+		int[] forwardEpoch = null;
+		/** query in which the backward state of an intersection has been set */
+		int[] backwardEpoch = null;
+		/** cost from the source (forward search) */
+		double[] forwardCost = null;
+		/** cost to the destination (backward search) */
+		double[] backwardCost = null;
+		/** arc to the parent intersection in the forward search */
+		int[] forwardArc = null;
+		/** arc to the parent intersection in the backward search */
+		int[] backwardArc = null;
+		/** priority queue of the forward search */
+		IntHeap forwardQueue = null;
+		/** priority queue of the backward search */
+		IntHeap backwardQueue = null;
+		
+		/**
+		 * Creates the query state
+		 * @param nodeCount Number of intersections
+		 */
+		Query(int nodeCount) {
+			forwardEpoch = new int[nodeCount];
+			backwardEpoch = new int[nodeCount];
+			forwardCost = new double[nodeCount];
+			backwardCost = new double[nodeCount];
+			forwardArc = new int[nodeCount];
+			backwardArc = new int[nodeCount];
+			forwardQueue = new IntHeap(nodeCount);
+			backwardQueue = new IntHeap(nodeCount);
+		}
+		
+		/**
+		 * Starts a new query
+		 */
+		void start() {
+			if (epoch==Integer.MAX_VALUE) {
+				Arrays.fill(forwardEpoch, 0);
+				Arrays.fill(backwardEpoch, 0);
+				epoch = 0;
+			}
+			epoch++;
+			forwardQueue.clear();
+			backwardQueue.clear();
+		}
+	}
+	
+	
+	/**
+	 * Creates an empty hierarchy for a road network
+	 * @param network Road network
+	 */
+	private ContractionHierarchy(RoadNetwork network) {
+		this.network = network;
+		nodeCount = network.getNodes().size();
+		fingerprint = getFingerprint(network);
+	}
+	
+	/**
+	 * Builds the contraction hierarchy for a road network
+	 * @param network Road network
+	 * @return Contraction hierarchy
+	 */
+	public static ContractionHierarchy build(RoadNetwork network) {
+		ContractionHierarchy hierarchy = new ContractionHierarchy(network);
+		new Contraction(hierarchy).run();
+		hierarchy.createSearchGraph();
+		hierarchy.createQueryState();
+		return hierarchy;
+	}
+	
+	/**
+	 * Loads the contraction hierarchy of a road network from a file if the file exists and matches the network,
+	 * otherwise the hierarchy is built and saved to the file.
+	 * @param network Road network
+	 * @param file File for the hierarchy (null if the hierarchy is not saved)
+	 * @return Contraction hierarchy
+	 */
+	public static ContractionHierarchy prepare(RoadNetwork network, String file) {
+		ContractionHierarchy hierarchy = null;
+		if (file!=null) hierarchy = load(file, network);
+		if (hierarchy==null) {
+			long start = System.currentTimeMillis();
+			hierarchy = build(network);
+			System.out.println("Contraction hierarchy: " + hierarchy.arcCount + " arcs, " + (System.currentTimeMillis()-start) + " ms");
+			if (file!=null) hierarchy.save(file);
+		}
+		return hierarchy;
+	}
+	
+	/**
+	 * Creates a copy of this hierarchy for a copy of the road network (see RoadNetwork.copy()).
+	 * The hierarchy is shared, the state of the queries is separate.
+	 * @param network Copy of the road network
+	 * @return Copy of the hierarchy
+	 */
+	public ContractionHierarchy copy(RoadNetwork network) {
+		ContractionHierarchy copy = new ContractionHierarchy(network);
+		copy.rank = rank;
+		copy.arcCount = arcCount;
+		copy.arcFrom = arcFrom;
+		copy.arcTo = arcTo;
+		copy.arcWeight = arcWeight;
+		copy.arcEdge = arcEdge;
+		copy.arcFirst = arcFirst;
+		copy.arcSecond = arcSecond;
+		copy.upStart = upStart;
+		copy.upArcs = upArcs;
+		copy.downStart = downStart;
+		copy.downArcs = downArcs;
+		copy.createQueryState();
+		return copy;
+	}
+	
+	/**
+	 * Calculates a fingerprint of the intersections and weights of all roads
+	 * @param network Road network
+	 * @return Fingerprint
+	 */
+	static long getFingerprint(RoadNetwork network) {
+		long hash = network.getNodes().size();
+		Iterator<RoadEdge> it = network.getEdges().iterator();
+		while (it.hasNext()) {
+			RoadEdge edge = it.next();
+			hash = 31*hash + edge.getStartNode().id;
+			hash = 31*hash + edge.getEndNode().id;
+			hash = 31*hash + Double.doubleToLongBits(edge.weight);
+		}
+		return hash;
+	}
+	
+	/**
+	 * Checks if an intersection is part of the road network of this hierarchy
+	 * @param node Intersection
+	 * @return True if the intersection is part of the road network
+	 */
+	boolean contains(RoadNode node) {
+		return node.id>=0 && node.id<nodeCount && network.getNodes().get(node.id)==node;
+	}
+	
+	/**
+	 * Adds an arc
+	 * @return Index of the arc
+	 */
+	int addArc(int from, int to, double weight, int edge, int first, int second) {
+		if (arcCount==arcFrom.length) {
+			int capacity = 2*arcCount;
+			arcFrom = Arrays.copyOf(arcFrom, capacity);
+			arcTo = Arrays.copyOf(arcTo, capacity);
+			arcWeight = Arrays.copyOf(arcWeight, capacity);
+			arcEdge = Arrays.copyOf(arcEdge, capacity);
+			arcFirst = Arrays.copyOf(arcFirst, capacity);
+			arcSecond = Arrays.copyOf(arcSecond, capacity);
+		}
+		arcFrom[arcCount] = from;
+		arcTo[arcCount] = to;
+		arcWeight[arcCount] = weight;
+		arcEdge[arcCount] = edge;
+		arcFirst[arcCount] = first;
+		arcSecond[arcCount] = second;
+		return arcCount++;
+	}
+	
+	/**
+	 * Creates the upward and downward arc lists used by the queries
+	 */
+	void createSearchGraph() {
+		upStart = new int[nodeCount+1];
+		downStart = new int[nodeCount+1];
+		
+		for (int i=0; i<arcCount; i++) {
+			if (rank[arcFrom[i]]<rank[arcTo[i]]) upStart[arcFrom[i]+1]++;
+			else downStart[arcTo[i]+1]++;
+		}
+		for (int i=0; i<nodeCount; i++) {
+			upStart[i+1] += upStart[i];
+			downStart[i+1] += downStart[i];
+		}
+		
+		upArcs = new int[upStart[nodeCount]];
+		downArcs = new int[downStart[nodeCount]];
+		int[] upNext = Arrays.copyOf(upStart, nodeCount);
+		int[] downNext = Arrays.copyOf(downStart, nodeCount);
+		
+		for (int i=0; i<arcCount; i++) {
+			if (rank[arcFrom[i]]<rank[arcTo[i]]) upArcs[upNext[arcFrom[i]]++] = i;
+			else downArcs[downNext[arcTo[i]]++] = i;
+		}
+	}
+	
+	/**
+	 * Creates the state of the bidirectional search, which is allocated for each thread on its first query
+	 */
+	void createQueryState() {
+		final int count = nodeCount;
+		queries = new ThreadLocal<Query>() {
+			protected Query initialValue() {
+				return new Query(count);
+			}
+		};
+	}
+	
+	/**
+	 * Calculates the shortest path between source and destination
+	 * @param source Start intersection of the path
+	 * @param destination End intersection of the path
+	 * @return Shortest path between source and destination or null if no such path exists
+	 */
+	public Path getPath(RoadNode source, RoadNode destination) {
+		
+		// start a new query with the query state of this thread
+		Query query = queries.get();
+		query.start();
+		
+		query.forwardEpoch[source.id] = query.epoch;
+		query.forwardCost[source.id] = 0;
+		query.forwardArc[source.id] = -1;
+		query.forwardQueue.update(source.id, 0);
+		
+		query.backwardEpoch[destination.id] = query.epoch;
+		query.backwardCost[destination.id] = 0;
+		query.backwardArc[destination.id] = -1;
+		query.backwardQueue.update(destination.id, 0);
+		
+		double best = Double.POSITIVE_INFINITY;
+		int meeting = -1;
+		
+		while (true) {
+			
+			double forwardMin = query.forwardQueue.minCost();
+			double backwardMin = query.backwardQueue.minCost();
+			// no shorter path can be found
+			if (Math.min(forwardMin, backwardMin)>=best || (query.forwardQueue.isEmpty() && query.backwardQueue.isEmpty())) break;
+			
+			if (forwardMin<=backwardMin) {
+				
+				int node = query.forwardQueue.poll();
+				if (query.backwardEpoch[node]==query.epoch && query.forwardCost[node] + query.backwardCost[node]<best) {
+					best = query.forwardCost[node] + query.backwardCost[node];
+					meeting = node;
+				}
+				
+				for (int i=upStart[node]; i<upStart[node+1]; i++) {
+					int arc = upArcs[i];
+					int next = arcTo[arc];
+					double cost = query.forwardCost[node] + arcWeight[arc];
+					if (query.forwardEpoch[next]!=query.epoch || cost<query.forwardCost[next]) {
+						query.forwardEpoch[next] = query.epoch;
+						query.forwardCost[next] = cost;
+						query.forwardArc[next] = arc;
+						query.forwardQueue.update(next, cost);
+					}
+				}
+				
+			} else {
+				
+				int node = query.backwardQueue.poll();
+				if (query.forwardEpoch[node]==query.epoch && query.forwardCost[node] + query.backwardCost[node]<best) {
+					best = query.forwardCost[node] + query.backwardCost[node];
+					meeting = node;
+				}
+				
+				for (int i=downStart[node]; i<downStart[node+1]; i++) {
+					int arc = downArcs[i];
+					int next = arcFrom[arc];
+					double cost = query.backwardCost[node] + arcWeight[arc];
+					if (query.backwardEpoch[next]!=query.epoch || cost<query.backwardCost[next]) {
+						query.backwardEpoch[next] = query.epoch;
+						query.backwardCost[next] = cost;
+						query.backwardArc[next] = arc;
+						query.backwardQueue.update(next, cost);
+					}
+				}
+			}
+		}
+		
+		if (meeting==-1) return null;
+		
+		// arcs from the source to the meeting intersection
+		LinkedList<Integer> arcs = new LinkedList<Integer>();
+		int node = meeting;
+		while (query.forwardArc[node]!=-1) {
+			arcs.addFirst(query.forwardArc[node]);
+			node = arcFrom[query.forwardArc[node]];
+		}
+		// arcs from the meeting intersection to the destination
+		node = meeting;
+		while (query.backwardArc[node]!=-1) {
+			arcs.addLast(query.backwardArc[node]);
+			node = arcTo[query.backwardArc[node]];
+		}
+		
+		// unpack shortcuts
+		int[] path = new int[arcs.size()];
+		int length = 0;
+		int[] stack = new int[16];
+		Iterator<Integer> it = arcs.iterator();
+		while (it.hasNext()) {
+			int size = 0;
+			stack[size++] = it.next();
+			while (size>0) {
+				int arc = stack[--size];
+				if (arcEdge[arc]>=0) {
+					if (length==path.length) path = Arrays.copyOf(path, 2*path.length);
+					path[length++] = arcEdge[arc];
+				} else {
+					if (size+2>stack.length) stack = Arrays.copyOf(stack, 2*stack.length);
+					stack[size++] = arcSecond[arc];
+					stack[size++] = arcFirst[arc];
+				}
+			}
+		}
+		
+		return new Path(network.getEdges(), Arrays.copyOf(path, length));
+	}
+	
+	/**
+	 * Saves the hierarchy to a file
+	 * @param file File
+	 * @return Returns true if the hierarchy was written successfully
+	 */
+	public boolean save(String file) {
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(magic);
+			out.writeInt(version);
+			out.writeInt(nodeCount);
+			out.writeInt(network.getEdges().size());
+			out.writeLong(fingerprint);
+			for (int i=0; i<nodeCount; i++) {
+				out.writeInt(rank[i]);
+			}
+			out.writeInt(arcCount);
+			for (int i=0; i<arcCount; i++) {
+				out.writeInt(arcFrom[i]);
+				out.writeInt(arcTo[i]);
+				out.writeDouble(arcWeight[i]);
+				out.writeInt(arcEdge[i]);
+				out.writeInt(arcFirst[i]);
+				out.writeInt(arcSecond[i]);
+			}
+			out.close();
+			System.out.println("Saved contraction hierarchy to " + file);
+			return true;
+		} catch (Exception e) {
+			System.err.println("Error writing contraction hierarchy " + file + ": " + e.getMessage());
+			return false;
+		}
+	}
+	
+	/**
+	 * Loads the hierarchy of a road network from a file
+	 * @param file File
+	 * @param network Road network
+	 * @return Contraction hierarchy or null if the file does not exist or does not match the road network
+	 */
+	public static ContractionHierarchy load(String file, RoadNetwork network) {
+		
+		if (!new File(file).exists()) return null;
+		
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt()!=magic || in.readInt()!=version) {
+					System.err.println("Contraction hierarchy " + file + " has an unknown format");
+					return null;
+				}
+				
+				ContractionHierarchy hierarchy = new ContractionHierarchy(network);
+				if (in.readInt()!=hierarchy.nodeCount || in.readInt()!=network.getEdges().size() || in.readLong()!=hierarchy.fingerprint) {
+					System.err.println("Contraction hierarchy " + file + " does not match the road network");
+					return null;
+				}
+				
+				hierarchy.rank = new int[hierarchy.nodeCount];
+				for (int i=0; i<hierarchy.nodeCount; i++) {
+					hierarchy.rank[i] = in.readInt();
+				}
+				int arcs = in.readInt();
+				for (int i=0; i<arcs; i++) {
+					hierarchy.addArc(in.readInt(), in.readInt(), in.readDouble(), in.readInt(), in.readInt(), in.readInt());
+				}
+				
+				hierarchy.createSearchGraph();
+				hierarchy.createQueryState();
+				System.out.println("Loaded contraction hierarchy from " + file);
+				return hierarchy;
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			System.err.println("Error reading contraction hierarchy " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	
+	/**
+	 * Contraction contracts the intersections of a road network and adds the resulting shortcuts 
+	 * to the hierarchy.
+	 * @author psommer
+	 *
+	 */
+	static class Contraction {
+		
+		/** hierarchy */
+		ContractionHierarchy hierarchy = null;
+		/** number of intersections */
+		int nodeCount = 0;
+		/** outgoing arcs of each intersection */
+		int[][] outArcs = null;
+		/** number of outgoing arcs of each intersection */
+		int[] outCount = null;
+		/** incoming arcs of each intersection */
+		int[][] inArcs = null;
+		/** number of incoming arcs of each intersection */
+		int[] inCount = null;
+		/** indicates if an intersection has already been contracted */
+		boolean[] contracted = null;
+		/** number of contracted neighbours of each intersection */
+		int[] contractedNeighbours = null;
+		
+		/** number of the current witness search */
+		int epoch = 0;
+		/** witness search in which the cost of an intersection has been set */
+		int[] witnessEpoch = null;
+		/** cost from the start of the witness search */
+		double[] witnessCost = null;
+		/** priority queue of the witness search */
+		IntHeap witnessQueue = null;
+		/** witness search in which an intersection is a target of the search */
+		int[] targetEpoch = null;
+		
+		/**
+		 * Creates the initial graph of the contraction out of the roads of the network.
+		 * If there are several roads between two intersections, only the road with the lowest weight is used.
+		 * @param hierarchy Hierarchy
+		 */
+		Contraction(ContractionHierarchy hierarchy) {
+			this.hierarchy = hierarchy;
+			nodeCount = hierarchy.nodeCount;
+			outArcs = new int[nodeCount][];
+			outCount = new int[nodeCount];
+			inArcs = new int[nodeCount][];
+			inCount = new int[nodeCount];
+			contracted = new boolean[nodeCount];
+			contractedNeighbours = new int[nodeCount];
+			witnessEpoch = new int[nodeCount];
+			witnessCost = new double[nodeCount];
+			witnessQueue = new IntHeap(nodeCount);
+			targetEpoch = new int[nodeCount];
+			
+			List<RoadEdge> edges = hierarchy.network.getEdges();
+			for (int i=0; i<edges.size(); i++) {
+				RoadEdge edge = edges.get(i);
+				RoadNode start = edge.getStartNode();
+				RoadNode end = edge.getEndNode();
+				if (start==end || !hierarchy.contains(start) || !hierarchy.contains(end)) continue;
+				
+				int arc = findArc(start.id, end.id);
+				if (arc==-1) {
+					addArc(start.id, end.id, edge.weight, edge.id, -1, -1);
+				} else if (edge.weight<hierarchy.arcWeight[arc]) {
+					hierarchy.arcWeight[arc] = edge.weight;
+					hierarchy.arcEdge[arc] = edge.id;
+				}
+			}
+		}
+		
+		/**
+		 * Contracts all intersections
+		 */
+		void run() {
+			
+			hierarchy.rank = new int[nodeCount];
+			IntHeap order = new IntHeap(nodeCount);
+			for (int i=0; i<nodeCount; i++) {
+				order.update(i, getPriority(i));
+			}
+			
+			int rank = 0;
+			while (!order.isEmpty()) {
+				
+				int node = order.poll();
+				
+				// the priority may have changed since it has been calculated (lazy update)
+				double priority = getPriority(node);
+				if (!order.isEmpty() && priority>order.minCost()) {
+					order.update(node, priority);
+					continue;
+				}
+				
+				contract(node, false);
+				contracted[node] = true;
+				hierarchy.rank[node] = rank++;
+				
+				// update the priority of the neighbours
+				for (int i=0; i<outCount[node]; i++) {
+					int neighbour = hierarchy.arcTo[outArcs[node][i]];
+					if (!contracted[neighbour]) {
+						contractedNeighbours[neighbour]++;
+						order.update(neighbour, getPriority(neighbour));
+					}
+				}
+				for (int i=0; i<inCount[node]; i++) {
+					int neighbour = hierarchy.arcFrom[inArcs[node][i]];
+					if (!contracted[neighbour]) {
+						contractedNeighbours[neighbour]++;
+						order.update(neighbour, getPriority(neighbour));
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Calculates the contraction priority of an intersection (intersections with a lower priority are contracted first).
+		 * The priority is the number of required shortcuts minus the number of removed arcs plus the number of 
+		 * contracted neighbours.
+		 * @param node Intersection
+		 * @return Priority
+		 */
+		double getPriority(int node) {
+			int arcs = 0;
+			for (int i=0; i<outCount[node]; i++) {
+				if (!contracted[hierarchy.arcTo[outArcs[node][i]]]) arcs++;
+			}
+			for (int i=0; i<inCount[node]; i++) {
+				if (!contracted[hierarchy.arcFrom[inArcs[node][i]]]) arcs++;
+			}
+			return contract(node, true) - arcs + contractedNeighbours[node];
+		}
+		
+		/**
+		 * Adds the shortcuts which are required to contract an intersection
+		 * @param node Intersection
+		 * @param simulate If true, the shortcuts are only counted
+		 * @return Number of required shortcuts
+		 */
+		int contract(int node, boolean simulate) {
+			
+			int shortcuts = 0;
+			
+			double maxOut = 0;
+			for (int i=0; i<outCount[node]; i++) {
+				int arc = outArcs[node][i];
+				if (!contracted[hierarchy.arcTo[arc]]) maxOut = Math.max(maxOut, hierarchy.arcWeight[arc]);
+			}
+			
+			for (int i=0; i<inCount[node]; i++) {
+				
+				int inArc = inArcs[node][i];
+				int from = hierarchy.arcFrom[inArc];
+				if (contracted[from]) continue;
+				
+				searchWitness(from, node, hierarchy.arcWeight[inArc] + maxOut, simulate ? estimateLimit : witnessLimit);
+				
+				for (int k=0; k<outCount[node]; k++) {
+					int outArc = outArcs[node][k];
+					int to = hierarchy.arcTo[outArc];
+					if (contracted[to] || to==from) continue;
+					
+					double cost = hierarchy.arcWeight[inArc] + hierarchy.arcWeight[outArc];
+					if (witnessEpoch[to]==epoch && witnessCost[to]<=cost) continue;
+					
+					// no path without this intersection is as short as the path via this intersection
+					shortcuts++;
+					if (!simulate) {
+						int arc = findArc(from, to);
+						if (arc==-1) {
+							addArc(from, to, cost, -1, inArc, outArc);
+						} else if (cost<hierarchy.arcWeight[arc]) {
+							hierarchy.arcWeight[arc] = cost;
+							hierarchy.arcEdge[arc] = -1;
+							hierarchy.arcFirst[arc] = inArc;
+							hierarchy.arcSecond[arc] = outArc;
+						}
+					}
+				}
+			}
+			
+			return shortcuts;
+		}
+		
+		/**
+		 * Searches the paths from an intersection which do not contain the contracted intersection.
+		 * The search stops when all successors of the contracted intersection have been settled and is limited 
+		 * by the cost and the number of settled intersections.
+		 * @param source Start intersection
+		 * @param excluded Intersection which is contracted
+		 * @param limit Maximum cost
+		 * @param maxSettled Maximum number of settled intersections
+		 */
+		void searchWitness(int source, int excluded, double limit, int maxSettled) {
+			
+			epoch++;
+			witnessQueue.clear();
+			witnessEpoch[source] = epoch;
+			witnessCost[source] = 0;
+			witnessQueue.update(source, 0);
+			
+			int targets = 0;
+			for (int i=0; i<outCount[excluded]; i++) {
+				int target = hierarchy.arcTo[outArcs[excluded][i]];
+				if (!contracted[target] && target!=source && targetEpoch[target]!=epoch) {
+					targetEpoch[target] = epoch;
+					targets++;
+				}
+			}
+			
+			int settled = 0;
+			while (targets>0 && !witnessQueue.isEmpty() && witnessQueue.minCost()<=limit && settled<maxSettled) {
+				
+				int node = witnessQueue.poll();
+				settled++;
+				if (targetEpoch[node]==epoch) targets--;
+				
+				for (int i=0; i<outCount[node]; i++) {
+					int arc = outArcs[node][i];
+					int next = hierarchy.arcTo[arc];
+					if (contracted[next] || next==excluded) continue;
+					
+					double cost = witnessCost[node] + hierarchy.arcWeight[arc];
+					if (witnessEpoch[next]!=epoch || cost<witnessCost[next]) {
+						witnessEpoch[next] = epoch;
+						witnessCost[next] = cost;
+						witnessQueue.update(next, cost);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Returns the arc between two intersections
+		 * @return Index of the arc or -1 if there is no such arc
+		 */
+		int findArc(int from, int to) {
+			for (int i=0; i<outCount[from]; i++) {
+				if (hierarchy.arcTo[outArcs[from][i]]==to) return outArcs[from][i];
+			}
+			return -1;
+		}
+		
+		/**
+		 * Adds an arc to the hierarchy and to the graph of the contraction
+		 */
+		void addArc(int from, int to, double weight, int edge, int first, int second) {
+			int arc = hierarchy.addArc(from, to, weight, edge, first, second);
+			
+			if (outArcs[from]==null) outArcs[from] = new int[4];
+			else if (outCount[from]==outArcs[from].length) outArcs[from] = Arrays.copyOf(outArcs[from], 2*outCount[from]);
+			outArcs[from][outCount[from]++] = arc;
+			
+			if (inArcs[to]==null) inArcs[to] = new int[4];
+			else if (inCount[to]==inArcs[to].length) inArcs[to] = Arrays.copyOf(inArcs[to], 2*inCount[to]);
+			inArcs[to][inCount[to]++] = arc;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,172 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package model;
+
+import java.util.*;
+
+/**
+ * IntHeap is an indexed binary min-heap of integer identifiers (0 to capacity-1) with a cost for each 
+ * identifier. The cost of an identifier in the heap can be changed in O(log n). Identifiers with the same 
+ * cost are ordered by their value.
+ * @author psommer
+ *
+ */
+class IntHeap {
+
+	/** identifiers in heap order */
+	int[] heap = null;
+	/** position of each identifier in the heap (-1 if not in the heap) */
+	int[] position = null;
+	/** cost of each identifier */
+	double[] cost = null;
+	/** number of identifiers in the heap */
+	int size = 0;
+	
+	/**
+	 * Creates an empty heap
+	 * @param capacity Number of identifiers
+	 */
+	IntHeap(int capacity) {
+		heap = new int[capacity];
+		position = new int[capacity];
+		cost = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+	
+	/**
+	 * Checks if the heap is empty
+	 * @return True if the heap does not contain any identifiers
+	 */
+	boolean isEmpty() {
+		return size==0;
+	}
+	
+	/**
+	 * Returns the lowest cost of all identifiers in the heap
+	 * @return Lowest cost or positive infinity if the heap is empty
+	 */
+	double minCost() {
+		return (size==0) ? Double.POSITIVE_INFINITY : cost[heap[0]];
+	}
+	
+	/**
+	 * Removes all identifiers from the heap
+	 */
+	void clear() {
+		for (int i=0; i<size; i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+	
+	/**
+	 * Adds an identifier to the heap or changes its cost if it is already in the heap
+	 * @param id Identifier
+	 * @param value Cost
+	 */
+	void update(int id, double value) {
+		if (position[id]<0) {
+			cost[id] = value;
+			heap[size] = id;
+			position[id] = size;
+			size++;
+			siftUp(position[id]);
+		} else if (value<cost[id]) {
+			cost[id] = value;
+			siftUp(position[id]);
+		} else {
+			cost[id] = value;
+			siftDown(position[id]);
+		}
+	}
+	
+	/**
+	 * Removes the identifier with the lowest cost from the heap
+	 * @return Identifier with the lowest cost or -1 if the heap is empty
+	 */
+	int poll() {
+		if (size==0) return -1;
+		
+		int first = heap[0];
+		size--;
+		if (size>0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		position[first] = -1;
+		return first;
+	}
+	
+	/**
+	 * Moves the identifier at the given index towards the root of the heap
+	 */
+	private void siftUp(int index) {
+		int id = heap[index];
+		while (index>0) {
+			int parent = (index-1) >>> 1;
+			if (!isLess(id, heap[parent])) break;
+			heap[index] = heap[parent];
+			position[heap[index]] = index;
+			index = parent;
+		}
+		heap[index] = id;
+		position[id] = index;
+	}
+	
+	/**
+	 * Moves the identifier at the given index towards the leaves of the heap
+	 */
+	private void siftDown(int index) {
+		int id = heap[index];
+		int half = size >>> 1;
+		while (index<half) {
+			int child = 2*index + 1;
+			if (child+1<size && isLess(heap[child+1], heap[child])) child++;
+			if (!isLess(heap[child], id)) break;
+			heap[index] = heap[child];
+			position[heap[index]] = index;
+			index = child;
+		}
+		heap[index] = id;
+		position[id] = index;
+	}
+	
+	/**
+	 * Compares two identifiers by their cost and their value
+	 */
+	private boolean isLess(int id1, int id2) {
+		if (cost[id1]!=cost[id2]) return cost[id1]<cost[id2];
+		return id1<id2;
+	}
+	
+}
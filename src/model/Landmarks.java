@@ -0,0 +1,362 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package model;
+
+import java.util.*;
+
+/**
+ * Landmarks implements the ALT algorithm (A*, landmarks, triangle inequality) for shortest path queries.
+ * A few intersections at the border of the road network are selected as landmarks and the distances from and 
+ * to all landmarks are calculated for each intersection. The triangle inequality then gives lower bounds for 
+ * the distance between any two intersections, which are used by a bidirectional A* search.
+ * 
+ * The preprocessing only needs two runs of Dijkstra's algorithm per landmark. The lower bounds remain valid 
+ * as long as no road weight drops below its weight at the time of the preprocessing (see isValid()).
+ * @author psommer
+ *
+ */
+public class Landmarks {
+
+	/**
+	 * Search state of a bidirectional query
+	 */
+	static class Query {
+		/** forward search from the source */
+		RouteQuery forward = null;
+		/** backward search from the destination */
+		RouteQuery backward = null;
+		/** query in which the potential of each intersection has been calculated */
+		int[] potentialEpoch = null;
+		/** potential of each intersection (see getPotential()) */
+		double[] potential = null;
+		/** number of the current query */
+		int epoch = 0;
+		
+		Query(int nodeCount) {
+			forward = new RouteQuery(nodeCount);
+			backward = new RouteQuery(nodeCount);
+			potentialEpoch = new int[nodeCount];
+			potential = new double[nodeCount];
+		}
+		
+		void start() {
+			forward.start();
+			backward.start();
+			if (epoch==Integer.MAX_VALUE) {
+				Arrays.fill(potentialEpoch, 0);
+				epoch = 0;
+			}
+			epoch++;
+		}
+	}
+	
+	/** snapshot of the road network used for the preprocessing */
+	RoadGraph graph = null;
+	/** index of the first incoming road of each intersection */
+	int[] inStart = null;
+	/** incoming roads (index in the outgoing roads of the snapshot) */
+	int[] inIndex = null;
+	/** start intersections of the incoming roads */
+	int[] inSource = null;
+	/** landmark intersections */
+	int[] landmarks = null;
+	/** distance from each landmark to each intersection (intersection * landmarks + landmark) */
+	double[] fromLandmark = null;
+	/** distance from each intersection to each landmark (intersection * landmarks + landmark) */
+	double[] toLandmark = null;
+	
+	/** search state for each thread */
+	private ThreadLocal<Query> queries = null;
+	
+	/**
+	 * Selects the landmarks and calculates the distances from and to the landmarks
+	 * @param graph Snapshot of the road network
+	 * @param count Number of landmarks
+	 */
+	public Landmarks(RoadGraph graph, int count) {
+		
+		long start = System.currentTimeMillis();
+		
+		this.graph = graph;
+		final int n = graph.nodeCount;
+		
+		// incoming roads (compressed sparse row format)
+		inStart = new int[n+1];
+		inIndex = new int[graph.outTarget.length];
+		inSource = new int[graph.outTarget.length];
+		for (int i=0; i<graph.outTarget.length; i++) {
+			inStart[graph.outTarget[i]+1]++;
+		}
+		for (int i=0; i<n; i++) {
+			inStart[i+1] += inStart[i];
+		}
+		int[] next = Arrays.copyOf(inStart, n);
+		for (int node=0; node<n; node++) {
+			for (int i=graph.outStart[node]; i<graph.outStart[node+1]; i++) {
+				int position = next[graph.outTarget[i]]++;
+				inIndex[position] = i;
+				inSource[position] = node;
+			}
+		}
+		
+		// farthest selection: each landmark maximizes the round-trip distance to the previous landmarks
+		ArrayList<double[]> from = new ArrayList<double[]>();
+		ArrayList<double[]> to = new ArrayList<double[]>();
+		ArrayList<Integer> selected = new ArrayList<Integer>();
+		double[] score = (n>0) ? getDistances(0, true) : new double[0];
+		
+		while (selected.size()<count) {
+			int landmark = -1;
+			for (int i=0; i<n; i++) {
+				if (score[i]<Double.POSITIVE_INFINITY && score[i]>0 && (landmark==-1 || score[i]>score[landmark])) landmark = i;
+			}
+			if (landmark==-1) break;
+			
+			double[] distancesFrom = getDistances(landmark, true);
+			double[] distancesTo = getDistances(landmark, false);
+			if (selected.size()==0) Arrays.fill(score, Double.POSITIVE_INFINITY);
+			for (int i=0; i<n; i++) {
+				score[i] = Math.min(score[i], distancesFrom[i] + distancesTo[i]);
+			}
+			selected.add(landmark);
+			from.add(distancesFrom);
+			to.add(distancesTo);
+		}
+		
+		int k = selected.size();
+		landmarks = new int[k];
+		fromLandmark = new double[n*k];
+		toLandmark = new double[n*k];
+		for (int l=0; l<k; l++) {
+			landmarks[l] = selected.get(l);
+			for (int i=0; i<n; i++) {
+				fromLandmark[i*k+l] = from.get(l)[i];
+				toLandmark[i*k+l] = to.get(l)[i];
+			}
+		}
+		
+		queries = new ThreadLocal<Query>() {
+			protected Query initialValue() {
+				return new Query(n);
+			}
+		};
+		
+		System.out.println("Landmarks: " + k + " landmarks, " + (System.currentTimeMillis()-start) + " ms");
+	}
+	
+	/**
+	 * Dijkstra's algorithm on the snapshot of the preprocessing
+	 * @param source Source intersection
+	 * @param forward True for the distances from the source, false for the distances to the source
+	 * @return Distance for each intersection (positive infinity if not reachable)
+	 */
+	double[] getDistances(int source, boolean forward) {
+		
+		double[] distance = new double[graph.nodeCount];
+		boolean[] settled = new boolean[graph.nodeCount];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		IntHeap queue = new IntHeap(graph.nodeCount);
+		
+		distance[source] = 0;
+		queue.update(source, 0);
+		
+		int node;
+		while ((node=queue.poll())!=-1) {
+			settled[node] = true;
+			if (forward) {
+				for (int i=graph.outStart[node]; i<graph.outStart[node+1]; i++) {
+					int related = graph.outTarget[i];
+					double cost = distance[node] + graph.outWeight[i];
+					if (!settled[related] && cost<distance[related]) {
+						distance[related] = cost;
+						queue.update(related, cost);
+					}
+				}
+			} else {
+				for (int i=inStart[node]; i<inStart[node+1]; i++) {
+					int related = inSource[i];
+					double cost = distance[node] + graph.outWeight[inIndex[i]];
+					if (!settled[related] && cost<distance[related]) {
+						distance[related] = cost;
+						queue.update(related, cost);
+					}
+				}
+			}
+		}
+		
+		return distance;
+	}
+	
+	/**
+	 * Checks if the lower bounds are valid for a snapshot of the road network, i.e. if the snapshot has the 
+	 * same structure and no road weight is below its weight at the time of the preprocessing
+	 * @param current Snapshot of the road network
+	 * @return True if the landmarks can be used for the snapshot
+	 */
+	public boolean isValid(RoadGraph current) {
+		if (current.outStart!=graph.outStart || current.outTarget!=graph.outTarget) return false;
+		for (int i=0; i<graph.outWeight.length; i++) {
+			if (current.outWeight[i]<graph.outWeight[i]) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the number of landmarks
+	 * @return Number of landmarks
+	 */
+	public int size() {
+		return landmarks.length;
+	}
+	
+	/**
+	 * Lower bound for the distance between two intersections
+	 * @param from Start intersection
+	 * @param to End intersection
+	 * @param factor Lower bound of the weight per unit of straight-line distance
+	 * @param current Snapshot of the road network
+	 * @return Lower bound
+	 */
+	double getLowerBound(int from, int to, double factor, RoadGraph current) {
+		double bound = factor*current.getDistance(from, to);
+		int k = landmarks.length;
+		for (int l=0; l<k; l++) {
+			// d(L,to) - d(L,from) and d(from,L) - d(to,L)
+			double a = fromLandmark[to*k+l], b = fromLandmark[from*k+l];
+			if (a<Double.POSITIVE_INFINITY && b<Double.POSITIVE_INFINITY && a-b>bound) bound = a-b;
+			a = toLandmark[from*k+l];
+			b = toLandmark[to*k+l];
+			if (a<Double.POSITIVE_INFINITY && b<Double.POSITIVE_INFINITY && a-b>bound) bound = a-b;
+		}
+		return bound;
+	}
+	
+	/**
+	 * Returns the potential of an intersection for the forward search (the potential of the backward 
+	 * search is the negative value). The average of the lower bounds to the destination and from the 
+	 * source keeps the potentials of both searches consistent.
+	 */
+	double getPotential(Query query, int node, int source, int target, double factor, RoadGraph current) {
+		if (query.potentialEpoch[node]!=query.epoch) {
+			query.potentialEpoch[node] = query.epoch;
+			query.potential[node] = 0.5*(getLowerBound(node, target, factor, current) - getLowerBound(source, node, factor, current));
+		}
+		return query.potential[node];
+	}
+	
+	/**
+	 * Bidirectional A* search with the landmark lower bounds
+	 * @param current Snapshot of the road network with the current road weights
+	 * @param factor Lower bound of the weight per unit of straight-line distance (see RoadNetwork.getMinWeightPerDistance())
+	 * @param source Start intersection
+	 * @param target End intersection
+	 * @return Identifiers of the roads on the shortest path or null if no such path exists
+	 */
+	public int[] getPath(RoadGraph current, double factor, int source, int target) {
+		
+		Query query = queries.get();
+		query.start();
+		RouteQuery forward = query.forward;
+		RouteQuery backward = query.backward;
+		
+		forward.reach(source, 0, -1);
+		forward.queue.update(source, getPotential(query, source, source, target, factor, current));
+		backward.reach(target, 0, -1);
+		backward.queue.update(target, -getPotential(query, target, source, target, factor, current));
+		
+		// length of the shortest path found so far and the intersection where the searches met
+		double best = (source==target) ? 0 : Double.POSITIVE_INFINITY;
+		int meeting = (source==target) ? source : -1;
+		
+		while (!forward.queue.isEmpty() && !backward.queue.isEmpty()) {
+			
+			// no shorter path possible
+			if (forward.queue.minCost() + backward.queue.minCost() >= best) break;
+			
+			if (forward.queue.minCost()<=backward.queue.minCost()) {
+				int node = forward.queue.poll();
+				forward.settle(node);
+				for (int i=current.outStart[node]; i<current.outStart[node+1]; i++) {
+					int related = current.outTarget[i];
+					double cost = forward.cost[node] + current.outWeight[i];
+					if (!forward.isSettled(related) && (!forward.isReached(related) || forward.cost[related] > cost)) {
+						forward.reach(related, cost, current.outEdge[i]);
+						forward.queue.update(related, cost + getPotential(query, related, source, target, factor, current));
+						if (backward.isReached(related) && cost + backward.cost[related] < best) {
+							best = cost + backward.cost[related];
+							meeting = related;
+						}
+					}
+				}
+			} else {
+				int node = backward.queue.poll();
+				backward.settle(node);
+				for (int i=inStart[node]; i<inStart[node+1]; i++) {
+					int related = inSource[i];
+					double cost = backward.cost[node] + current.outWeight[inIndex[i]];
+					if (!backward.isSettled(related) && (!backward.isReached(related) || backward.cost[related] > cost)) {
+						backward.reach(related, cost, current.outEdge[inIndex[i]]);
+						backward.queue.update(related, cost - getPotential(query, related, source, target, factor, current));
+						if (forward.isReached(related) && cost + forward.cost[related] < best) {
+							best = cost + forward.cost[related];
+							meeting = related;
+						}
+					}
+				}
+			}
+		}
+		
+		if (meeting==-1) return null;
+		
+		// roads from the source to the meeting intersection and from the meeting intersection to the destination
+		int forwardSize = 0;
+		for (int node=meeting; node!=source; node=current.edgeSource[forward.parent[node]]) {
+			forwardSize++;
+		}
+		int backwardSize = 0;
+		for (int node=meeting; node!=target; node=current.edgeTarget[backward.parent[node]]) {
+			backwardSize++;
+		}
+		
+		int[] path = new int[forwardSize+backwardSize];
+		int index = forwardSize;
+		for (int node=meeting; node!=source; node=current.edgeSource[forward.parent[node]]) {
+			path[--index] = forward.parent[node];
+		}
+		index = forwardSize;
+		for (int node=meeting; node!=target; node=current.edgeTarget[backward.parent[node]]) {
+			path[index++] = backward.parent[node];
+		}
+		return path;
+	}
+	
+}
@@ -35,38 +35,57 @@ package model;
 import java.util.*;
 
 /**
- * Path contains a list of type RoadEdge which define a path between
- * two RoadNode objects.
+ * Path contains the roads which define a path between two RoadNode objects.
+ * The roads are stored as an array of road identifiers, which is never modified. 
+ * A cursor points to the next road.
  * @author psommer
  *
  */
 public class Path {
 
-	/** List of type RoadEdge containing all roads belonging to this path */
-	LinkedList<RoadEdge> roads = new LinkedList<RoadEdge>();
+	/** roads of the road network indexed by their identifier */
+	List<RoadEdge> edges = null;
+	/** identifiers of the roads belonging to this path (not modified) */
+	int[] roads = null;
+	/** index of the next road on this path */
+	int next = 0;
 	
 	/** total path length */
 	double length = 0;
 	
+	/**
+	 * Constructs a Path out of road identifiers
+	 * @param edges Roads of the road network indexed by their identifier
+	 * @param roads Identifiers of the roads on the path (the array is not copied and must not be modified)
+	 */
+	public Path(List<RoadEdge> edges, int[] roads) {
+		this.edges = edges;
+		this.roads = roads;
+		for (int i=0; i<roads.length; i++) {
+			length+=edges.get(roads[i]).length;
+		}
+	}
+	
 	/**
 	 * Constructs a Path
 	 * @param path List with roads
 	 */
 	public Path(List<RoadEdge> path) {
-		Iterator<RoadEdge> it = path.iterator();
-		while (it.hasNext()) {
-			RoadEdge road = it.next();
-			roads.add(road);
-			length+=road.length;
+		edges = new ArrayList<RoadEdge>(path);
+		roads = new int[edges.size()];
+		for (int i=0; i<roads.length; i++) {
+			roads[i] = i;
+			length+=edges.get(i).length;
 		}
 	}
 	
 	/**
 	 * Polls the next road from this path 
-	 * @return Next road on the path
+	 * @return Next road on the path or null if the end of the path has been reached
 	 */
 	public RoadEdge getNextRoad() {
-		return roads.poll();
+		if (next==roads.length) return null;
+		return edges.get(roads[next++]);
 	}
 	
 	
@@ -75,22 +94,47 @@ public class Path {
 	 * @return True if path has a next road, false if not
 	 */
 	public boolean hasNextRoad() {
-		return roads.size()>0;
+		return next<roads.length;
 	}
 	
 	/**
-	 * Number of roads on this path
+	 * Number of remaining roads on this path
 	 * @return number of roads
-	 */public int size() {
-		return roads.size();
+	 */
+	public int size() {
+		return roads.length-next;
+	}
+	
+	/**
+	 * Returns one of the remaining roads on this path
+	 * @param index Index of the road (0 for the next road)
+	 * @return Road
+	 */
+	public RoadEdge getRoad(int index) {
+		return edges.get(roads[next+index]);
 	}
 	
 	/**
 	 * Iterator for this path
-	 * @return ListIterator for roads on this path
+	 * @return Iterator for the remaining roads on this path
 	 */ 
-	public ListIterator<RoadEdge> getPathIterator() {
-		return roads.listIterator();
+	public Iterator<RoadEdge> getPathIterator() {
+		return new Iterator<RoadEdge>() {
+			int index = next;
+			
+			public boolean hasNext() {
+				return index<roads.length;
+			}
+			
+			public RoadEdge next() {
+				if (index>=roads.length) throw new NoSuchElementException();
+				return edges.get(roads[index++]);
+			}
+			
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 	
 }
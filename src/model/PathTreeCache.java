@@ -0,0 +1,105 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package model;
+
+import java.util.*;
+
+/**
+ * PathTreeCache keeps the shortest path trees of the most recently used source intersections.
+ * A shortest path tree contains the shortest paths from a source to all other intersections, stored as 
+ * the identifier of the road to the parent intersection for each intersection. A path from a cached 
+ * source is thus found in O(path length). The least recently used tree is removed if the cache is full.
+ * 
+ * The cache is thread-safe and can be shared between copies of a road network.
+ * @author psommer
+ *
+ */
+public class PathTreeCache {
+
+	/** maximum number of cached trees */
+	int capacity = 0;
+	/** cached trees in access order */
+	LinkedHashMap<Integer, int[]> trees = null;
+	/** number of lookups */
+	long lookups = 0;
+	/** number of lookups which found a cached tree */
+	long hits = 0;
+	
+	/**
+	 * Creates an empty cache
+	 * @param capacity Maximum number of cached trees
+	 */
+	public PathTreeCache(int capacity) {
+		this.capacity = capacity;
+		final int maxSize = capacity;
+		trees = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+				return size()>maxSize;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the cached shortest path tree of a source intersection
+	 * @param source Identifier of the source intersection
+	 * @return Parent road identifiers of all intersections or null if the tree is not cached
+	 */
+	synchronized int[] get(int source) {
+		lookups++;
+		int[] tree = trees.get(source);
+		if (tree!=null) hits++;
+		return tree;
+	}
+	
+	/**
+	 * Adds the shortest path tree of a source intersection to the cache
+	 * @param source Identifier of the source intersection
+	 * @param tree Parent road identifiers of all intersections
+	 */
+	synchronized void put(int source, int[] tree) {
+		trees.put(source, tree);
+	}
+	
+	/**
+	 * Returns the fraction of lookups which found a cached tree
+	 * @return Hit rate
+	 */
+	public synchronized double getHitRate() {
+		return (lookups==0) ? 0 : 1.0*hits/lookups;
+	}
+	
+	public synchronized String toString() {
+		return "Path tree cache: " + trees.size() + "/" + capacity + " trees, " + lookups + " lookups, hit rate " + String.format("%.2f", getHitRate());
+	}
+	
+}
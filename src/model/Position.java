@@ -59,4 +59,13 @@ public class Position {
 		this.x = x;
 		this.y = y;
 	}
+	
+	/**
+	 * Returns the straight-line distance to another position
+	 * @param position Other position
+	 * @return Distance
+	 */
+	public double getDistance(Position position) {
+		return Math.sqrt((x-position.x)*(x-position.x) + (y-position.y)*(y-position.y));
+	}
 }
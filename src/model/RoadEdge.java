@@ -32,6 +32,7 @@ package model;
 
 
 import mobility.*;
+import java.io.*;
 import java.util.*;
 
 /**
@@ -47,7 +48,7 @@ public class RoadEdge {
 	/** end node (nodeB) */
 	RoadNode nodeB = null;
 	
-	/** unique road id */
+	/** unique road id (assigned by the road network) */
 	public int id = 0;
 	/** identifier for this road in the GIS model */
 	public int identifier = 0;
@@ -64,25 +65,16 @@ public class RoadEdge {
 	public double maxSpeed = 0;
 	/** status of the traffic light at the end of the road. True=red, false=green */
 	boolean trafficLightRed = false;
-	/** list of line segments following the course of the road */
-	public List<Line> segments = null;
-	/** list of vehicles on this road */
-	ArrayList<MobileNode> vehicles = new ArrayList<MobileNode>(); 
-	
-	/**
-	 * This comparator compares two mobile nodes based on the position relative
-	 * to the current street
-	 * @author psommer
-	 *
-	 */
-	class CarOrderComparator implements Comparator<MobileNode> {
-		public int compare(MobileNode nodeA, MobileNode nodeB) {
-			return Double.compare(nodeA.position, nodeB.position);
-		}
-	}
-	
-	/** compares the order of two cars on the same road */
-	CarOrderComparator comparator = new CarOrderComparator();
+	/** course of the road (null for a straight road between the intersections) */
+	public RoadGeometry geometry = null;
+	/** indicates that the road runs in the opposite direction of its geometry */
+	public boolean reverse = false;
+	/** rearmost vehicle on this road (the vehicles are linked from the rear to the front, see MobileNode.frontVehicle) */
+	MobileNode rearmost = null;
+	/** foremost vehicle on this road */
+	MobileNode foremost = null;
+	/** number of vehicles on this road */
+	int vehicleCount = 0;
 	
 	/**
 	 * Constructs a road between the two given intersections. 
@@ -91,8 +83,6 @@ public class RoadEdge {
 	 * @param nodeB Intersection where the road ends
 	 */
 	public RoadEdge(RoadNode nodeA, RoadNode nodeB) {
-		// set unique road identifier
-		id = RoadNetwork.uniqueId++;
 		// set nodeA
 		this.nodeA = nodeA;
 		// add the road as an outgoing edge
@@ -107,16 +97,14 @@ public class RoadEdge {
 	
 	
 	/**
-	 * Constructs a road between the two given intersections defined by a intermediate road segments. 
+	 * Constructs a road between the two given intersections following the course of the given geometry. 
 	 * The road is directed. It starts at intersection nodeA and ends at intersection nodeB.
 	 * @param nodeA Intersection where the road starts
 	 * @param nodeB Intersection where the road ends
-	 * @param segments Line segments following the course of the road
-	 * @param length Road length
+	 * @param geometry Course of the road, shared with the road in the opposite direction
+	 * @param reverse True if the road runs from the last to the first point of the geometry
 	 */
-	public RoadEdge(RoadNode nodeA, RoadNode nodeB, List<Line> segments, double length) {
-		// set unique road identifier
-		id = RoadNetwork.uniqueId++;
+	public RoadEdge(RoadNode nodeA, RoadNode nodeB, RoadGeometry geometry, boolean reverse) {
 		// set nodeA
 		this.nodeA = nodeA;
 		// add the road as an outgoing edge
@@ -125,9 +113,32 @@ public class RoadEdge {
 		this.nodeB = nodeB;
 		// add the road as an incoming edge
 		this.nodeB.addIn(this);
-		this.segments = new ArrayList<Line>(segments);
+		this.geometry = geometry;
+		this.reverse = reverse;
 		// set road length
-		this.length = length;
+		length = geometry.length;
+	}
+	
+	/**
+	 * Creates a copy of the given road between the given intersections. The road is not added 
+	 * to the incoming and outgoing roads of the intersections. The geometry is shared with 
+	 * the given road, vehicles and traffic light status are not copied.
+	 * @param nodeA Intersection where the road starts
+	 * @param nodeB Intersection where the road ends
+	 * @param edge Road to copy
+	 */
+	public RoadEdge(RoadNode nodeA, RoadNode nodeB, RoadEdge edge) {
+		this.nodeA = nodeA;
+		this.nodeB = nodeB;
+		id = edge.id;
+		identifier = edge.identifier;
+		type = edge.type;
+		priority = edge.priority;
+		weight = edge.weight;
+		length = edge.length;
+		maxSpeed = edge.maxSpeed;
+		geometry = edge.geometry;
+		reverse = edge.reverse;
 	}
 	
 	/**
@@ -163,33 +174,61 @@ public class RoadEdge {
 	 * @return Position of the mobile node
 	 */
 	public Position getPosition(MobileNode node) {
+		return getPosition(node, new Position());
+	}
+	
+	/**
+	 * Calculates the position of a mobile node on this road without allocating objects.
+	 * @param node Mobile node
+	 * @param position Position object which receives the position of the mobile node
+	 * @return The given position object or null if the node is not within the road
+	 */
+	public Position getPosition(MobileNode node, Position position) {
 		
-		
-		if (segments!=null) {
+		if (geometry!=null) {
 			
-			double distance = 0;
-			Iterator<Line> it = segments.iterator();
-			while (it.hasNext()) {
-				Line segment = it.next();
-				distance+=segment.length;
-				
-				if (node.position<=distance) {
-					double fraction = 1 - (distance - node.position)/segment.length;
-					return new Position(segment.x1 + fraction*(segment.x2-segment.x1), segment.y1 + fraction*(segment.y2-segment.y1));
-				}
+			if (geometry.getPosition(node.position, reverse, position)==null) {
+				System.out.println("Position: " + node.position + " length: " + length);
+				return null;
 			}
-			
-			System.out.println("Position: " + node.position + " length: " + length);
-			
-			return null;
+			return position;
 			
 		} else {
 			double fraction = node.position/length;
-			return new Position(nodeA.x + fraction*(nodeB.x-nodeA.x), nodeA.y + fraction*(nodeB.y-nodeA.y));
+			position.x = nodeA.x + fraction*(nodeB.x-nodeA.x);
+			position.y = nodeA.y + fraction*(nodeB.y-nodeA.y);
+			return position;
 		}
 		
-		
-		
+	}
+	
+	/**
+	 * Returns the number of points along the course of this road, including both intersections
+	 * @return Number of points
+	 */
+	public int getPointCount() {
+		if (geometry==null) return 2;
+		return geometry.getPointCount();
+	}
+	
+	/**
+	 * Returns the x-coordinate of a point along the course of this road
+	 * @param index Index of the point in the direction of the road (0 is the start intersection)
+	 * @return x-coordinate
+	 */
+	public double getPointX(int index) {
+		if (geometry==null) return index==0 ? nodeA.x : nodeB.x;
+		return geometry.getX(index, reverse);
+	}
+	
+	/**
+	 * Returns the y-coordinate of a point along the course of this road
+	 * @param index Index of the point in the direction of the road (0 is the start intersection)
+	 * @return y-coordinate
+	 */
+	public double getPointY(int index) {
+		if (geometry==null) return index==0 ? nodeA.y : nodeB.y;
+		return geometry.getY(index, reverse);
 	}
 	
 	/**
@@ -210,50 +249,81 @@ public class RoadEdge {
 	
 
 	/**
-	 * Updates the current position of a vehicle on this street
+	 * Updates the current position of a vehicle on this street. The vehicles are ordered by their position.
+	 * As vehicles rarely pass each other, the order is only changed if the vehicle has passed one of its neighbours, 
+	 * the new place is then searched starting from the old one.
 	 * @param car Vehicle which updated its position
 	 */
 	public void update(MobileNode car) {
 		
-		
-		// remove vehicle
-		vehicles.remove(car);
-		
-		// find the correct insert position for this vehicle
-	    int index = Collections.binarySearch(vehicles, car, comparator);
-	
-	    // re-add the vehicle at the correct position
-	    if (index < 0) {
-	        vehicles.add(-index-1, car);
-	    } else {
-	    	vehicles.add(index, car);
-	    }
-
-	    // set this street as the current street
-		car.road = this;
-		
-		/*
-		double lastPosition = 0;
-		int lastId = -1;
-		
-		for (int i=0; i<vehicles.size();i++) {
+		if (car.orderedRoad==this) {
 			
-			MobileNode current = vehicles.get(i);
+			// check if the vehicle is still between its neighbours
+			if ((car.rearVehicle==null || car.rearVehicle.position<=car.position) && (car.frontVehicle==null || car.position<=car.frontVehicle.position)) {
+				car.road = this;
+				return;
+			}
 			
-			if (current.position<0 || current.position>length) System.out.println("Car not inside road bounds");
+			// re-insert the vehicle, starting at its old place
+			MobileNode behind = car.rearVehicle;
+			unlink(car);
+			insert(car, behind);
 			
-			if (current.position<lastPosition) {
-				System.out.println("error in car order");
-			}
+		} else {
 			
-			//if (current.position-lastPosition<1.0 && lastId!=-1) System.out.println("Road " + id + " (" + vehicles.size() + " vehicles): gap to close: " + (current.position - lastPosition) + " first: (" + lastId + ") " + lastPosition + " next (" + current.id + ") " + current.position);
-			lastPosition = current.position;
-			lastId = current.id;
+			if (car.orderedRoad!=null) car.orderedRoad.unlink(car);
+			// vehicles typically enter at the rear of the road
+			insert(car, null);
 		}
-		*/
+
+	    // set this street as the current street
+		car.road = this;
 		
+	}
+	
+	/**
+	 * Inserts a vehicle behind the first vehicle with the same or a higher position
+	 * @param car Vehicle to insert
+	 * @param behind Vehicle on this road where the search starts (null to start at the rear)
+	 */
+	private void insert(MobileNode car, MobileNode behind) {
+		
+		MobileNode front = (behind==null) ? rearmost : behind.frontVehicle;
 		
+		// move forward past the vehicles with a lower position
+		while (front!=null && front.position<car.position) {
+			behind = front;
+			front = front.frontVehicle;
+		}
+		// move backward past the vehicles with the same or a higher position
+		while (behind!=null && behind.position>=car.position) {
+			front = behind;
+			behind = behind.rearVehicle;
+		}
 		
+		car.rearVehicle = behind;
+		car.frontVehicle = front;
+		if (behind!=null) behind.frontVehicle = car;
+		else rearmost = car;
+		if (front!=null) front.rearVehicle = car;
+		else foremost = car;
+		car.orderedRoad = this;
+		vehicleCount++;
+	}
+	
+	/**
+	 * Removes a vehicle from the order of the vehicles on this road
+	 * @param car Vehicle on this road
+	 */
+	private void unlink(MobileNode car) {
+		if (car.rearVehicle!=null) car.rearVehicle.frontVehicle = car.frontVehicle;
+		else rearmost = car.frontVehicle;
+		if (car.frontVehicle!=null) car.frontVehicle.rearVehicle = car.rearVehicle;
+		else foremost = car.rearVehicle;
+		car.rearVehicle = null;
+		car.frontVehicle = null;
+		car.orderedRoad = null;
+		vehicleCount--;
 	}
 	
 	
@@ -262,7 +332,15 @@ public class RoadEdge {
 	 * @param car Vehicle to remove from this street
 	 */
 	public void remove(MobileNode car) {
-		vehicles.remove(car);
+		if (car.orderedRoad==this) unlink(car);
+	}
+	
+	/**
+	 * Returns the number of vehicles on this road
+	 * @return Number of vehicles
+	 */
+	public int getVehicleCount() {
+		return vehicleCount;
 	}
 	
 	/**
@@ -270,11 +348,7 @@ public class RoadEdge {
 	 * @return Vehicle in the rearmost position on this road or null if there is no vehicle on this road.
 	 */
 	public MobileNode getRearmostVehicle() {
-		try {
-			return vehicles.get(0);
-		} catch (Exception e){
-			return null;
-		}
+		return rearmost;
 	}
 	
 	/**
@@ -282,11 +356,7 @@ public class RoadEdge {
 	 * @return Vehicle in the foremost position on this road or null if there is no vehicle on this road.
 	 */
 	public MobileNode getForemostVehicle() {
-		try {
-			return vehicles.get(vehicles.size()-1);
-		} catch (Exception e){
-			return null;
-		}
+		return foremost;
 	}
 	
 	
@@ -296,10 +366,49 @@ public class RoadEdge {
 	 * @return Vehicle in front of the specified vehicle or null if no such vehicle exisits 
 	 */
 	public MobileNode getFrontVehicle(MobileNode currentVehicle) {
-		
-		int index = vehicles.indexOf(currentVehicle);
-		if (index>-1 && index<vehicles.size()-1) return vehicles.get(index+1);
-		return null;
+		return (currentVehicle.orderedRoad==this) ? currentVehicle.frontVehicle : null;
+	}
+	
+	/**
+	 * Writes the traffic light status, the weight and the order of the vehicles on this road to a snapshot
+	 * @param out Snapshot output stream
+	 * @throws IOException
+	 */
+	public void writeState(DataOutputStream out) throws IOException {
+		out.writeBoolean(trafficLightRed);
+		out.writeDouble(weight);
+		out.writeInt(vehicleCount);
+		for (MobileNode car=rearmost; car!=null; car=car.frontVehicle) {
+			out.writeInt(car.id);
+		}
+	}
+	
+	/**
+	 * Restores the traffic light status, the weight and the vehicles on this road from a snapshot
+	 * @param in Snapshot input stream
+	 * @param nodes Vehicles by node identifier
+	 * @throws IOException
+	 */
+	public void readState(DataInputStream in, Map<Integer, MobileNode> nodes) throws IOException {
+		trafficLightRed = in.readBoolean();
+		weight = in.readDouble();
+		while (rearmost!=null) {
+			unlink(rearmost);
+		}
+		int count = in.readInt();
+		for (int i=0; i<count; i++) {
+			MobileNode car = nodes.get(in.readInt());
+			if (car==null) throw new IOException("Unknown vehicle on road " + id);
+			if (car.orderedRoad!=null) car.orderedRoad.unlink(car);
+			// append in the stored order
+			car.rearVehicle = foremost;
+			if (foremost!=null) foremost.frontVehicle = car;
+			else rearmost = car;
+			foremost = car;
+			car.orderedRoad = this;
+			vehicleCount++;
+			car.road = this;
+		}
 	}
 	
 	/**
@@ -307,11 +416,9 @@ public class RoadEdge {
 	 */
 	public void listCars() {
 		
-		Iterator<MobileNode> it = vehicles.iterator();
 		System.out.println("Cars on street (length=" + length + "): " + getEndNode().id + "->" + getStartNode().id);
 
-		while (it.hasNext()) {
-			MobileNode node = it.next();
+		for (MobileNode node=rearmost; node!=null; node=node.frontVehicle) {
 			System.out.println("\tNode " + node.id + " position=" + node.position + " speed=" + node.speed);
 		}
 	}
@@ -0,0 +1,150 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package model;
+
+import mobility.*;
+
+/**
+ * RoadGeometry stores the course of a road as packed coordinate arrays. 
+ * The geometry is shared by the roads of both directions, the road in the opposite direction 
+ * reads the points backwards.
+ * @author psommer
+ *
+ */
+public class RoadGeometry {
+
+	/** x-coordinates of the points from the start to the end of the road */
+	final double[] x;
+	/** y-coordinates of the points from the start to the end of the road */
+	final double[] y;
+	/** length of each line segment between two consecutive points */
+	final double[] segmentLength;
+	/** distance from the start of the road to the end of each segment (forward direction) */
+	final double[] forwardEnds;
+	/** distance from the end of the road to the end of each segment in the opposite direction, i.e. the segments are numbered from the end of the road */
+	final double[] reverseEnds;
+	/** length of the road (sum of the segment lengths in forward direction) */
+	public final double length;
+	
+	/**
+	 * Creates the geometry of a road from its points. The arrays are used without copying them.
+	 * @param x x-coordinates of the points from the start to the end of the road
+	 * @param y y-coordinates of the points from the start to the end of the road
+	 */
+	public RoadGeometry(double[] x, double[] y) {
+		this.x = x;
+		this.y = y;
+		
+		int segments = x.length-1;
+		segmentLength = new double[segments];
+		for (int i=0; i<segments; i++) {
+			segmentLength[i] = Math.sqrt((x[i]-x[i+1])*(x[i]-x[i+1]) + (y[i]-y[i+1])*(y[i]-y[i+1]));
+		}
+		
+		// cumulative lengths are summed up in the direction of travel
+		forwardEnds = new double[segments];
+		double distance = 0;
+		for (int i=0; i<segments; i++) {
+			distance+=segmentLength[i];
+			forwardEnds[i] = distance;
+		}
+		length = distance;
+		
+		reverseEnds = new double[segments];
+		distance = 0;
+		for (int i=0; i<segments; i++) {
+			distance+=segmentLength[segments-1-i];
+			reverseEnds[i] = distance;
+		}
+	}
+	
+	/**
+	 * Returns the number of points (intersections and intermediate points) of the road
+	 * @return Number of points
+	 */
+	public int getPointCount() {
+		return x.length;
+	}
+	
+	/**
+	 * Returns the x-coordinate of a point
+	 * @param index Index of the point in the given direction
+	 * @param reverse True for the road in the opposite direction
+	 * @return x-coordinate
+	 */
+	public double getX(int index, boolean reverse) {
+		return reverse ? x[x.length-1-index] : x[index];
+	}
+	
+	/**
+	 * Returns the y-coordinate of a point
+	 * @param index Index of the point in the given direction
+	 * @param reverse True for the road in the opposite direction
+	 * @return y-coordinate
+	 */
+	public double getY(int index, boolean reverse) {
+		return reverse ? y[y.length-1-index] : y[index];
+	}
+	
+	/**
+	 * Calculates the position at the given distance from the start of the road without allocating objects.
+	 * The line segment is located by a binary search in the cumulative segment lengths.
+	 * @param distance Distance from the start of the road in the given direction
+	 * @param reverse True for the road in the opposite direction
+	 * @param position Position object which receives the coordinates
+	 * @return The given position object or null if the distance is not within the road
+	 */
+	public Position getPosition(double distance, boolean reverse, Position position) {
+		
+		double[] ends = reverse ? reverseEnds : forwardEnds;
+		
+		// first segment which ends at or after the given distance
+		int low = 0, high = ends.length;
+		while (low<high) {
+			int middle = (low+high) >>> 1;
+			if (distance<=ends[middle]) high = middle;
+			else low = middle+1;
+		}
+		if (low==ends.length) return null;
+		
+		// points of the segment in the packed arrays
+		int segment = reverse ? ends.length-1-low : low;
+		int start = reverse ? segment+1 : segment;
+		int end = reverse ? segment : segment+1;
+		
+		double fraction = 1 - (ends[low] - distance)/segmentLength[segment];
+		position.x = x[start] + fraction*(x[end]-x[start]);
+		position.y = y[start] + fraction*(y[end]-y[start]);
+		return position;
+	}
+	
+}
@@ -0,0 +1,314 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package model;
+
+import java.util.*;
+
+/**
+ * RoadGraph is a compact snapshot of the topology of a road network in compressed sparse row format.
+ * Intersections and roads are represented by their identifiers (index in the road network), the outgoing 
+ * roads of each intersection are stored in consecutive array elements (in the order of the outgoing roads 
+ * of the intersection). The graph is used for the traversal of the road network by the route calculation.
+ * 
+ * The snapshot contains the weights of the roads at the time it has been created. If the weights change, 
+ * a new snapshot can be derived which shares the structure of the graph and only copies the weights.
+ * @author psommer
+ *
+ */
+public class RoadGraph {
+
+	/** number of intersections */
+	public final int nodeCount;
+	/** x-coordinates of the intersections */
+	public final double[] x;
+	/** y-coordinates of the intersections */
+	public final double[] y;
+	/** index of the first outgoing road of each intersection (the last element is the number of roads) */
+	public final int[] outStart;
+	/** identifiers of the outgoing roads */
+	public final int[] outEdge;
+	/** end intersections of the outgoing roads */
+	public final int[] outTarget;
+	/** weights of the outgoing roads */
+	public final double[] outWeight;
+	/** start intersection of each road (by road identifier) */
+	public final int[] edgeSource;
+	/** end intersection of each road (by road identifier) */
+	public final int[] edgeTarget;
+	
+	/**
+	 * Creates the snapshot of a road network. Roads which do not belong to the network (or lead to 
+	 * an intersection which does not belong to the network) are left out.
+	 * @param network Road network
+	 */
+	public RoadGraph(RoadNetwork network) {
+		
+		List<RoadNode> nodes = network.getNodes();
+		List<RoadEdge> edges = network.getEdges();
+		
+		nodeCount = nodes.size();
+		x = new double[nodeCount];
+		y = new double[nodeCount];
+		outStart = new int[nodeCount+1];
+		edgeSource = new int[edges.size()];
+		edgeTarget = new int[edges.size()];
+		Arrays.fill(edgeSource, -1);
+		Arrays.fill(edgeTarget, -1);
+		
+		for (int i=0; i<nodeCount; i++) {
+			RoadNode node = nodes.get(i);
+			x[i] = node.x;
+			y[i] = node.y;
+			outStart[i+1] = outStart[i];
+			for (int k=0; k<node.outEdges.size(); k++) {
+				if (isMember(network, node.outEdges.get(k))) outStart[i+1]++;
+			}
+		}
+		
+		outEdge = new int[outStart[nodeCount]];
+		outTarget = new int[outStart[nodeCount]];
+		outWeight = new double[outStart[nodeCount]];
+		
+		int index = 0;
+		for (int i=0; i<nodeCount; i++) {
+			RoadNode node = nodes.get(i);
+			for (int k=0; k<node.outEdges.size(); k++) {
+				RoadEdge edge = node.outEdges.get(k);
+				if (!isMember(network, edge)) continue;
+				outEdge[index] = edge.id;
+				outTarget[index] = edge.getEndNode().id;
+				outWeight[index] = edge.weight;
+				edgeSource[edge.id] = i;
+				edgeTarget[edge.id] = outTarget[index];
+				index++;
+			}
+		}
+	}
+	
+	/**
+	 * Creates a snapshot with the current weights of the roads, which shares the structure of the given snapshot
+	 * @param graph Previous snapshot of the road network
+	 * @param edges Roads of the road network
+	 */
+	public RoadGraph(RoadGraph graph, List<RoadEdge> edges) {
+		nodeCount = graph.nodeCount;
+		x = graph.x;
+		y = graph.y;
+		outStart = graph.outStart;
+		outEdge = graph.outEdge;
+		outTarget = graph.outTarget;
+		edgeSource = graph.edgeSource;
+		edgeTarget = graph.edgeTarget;
+		outWeight = new double[outEdge.length];
+		for (int i=0; i<outEdge.length; i++) {
+			outWeight[i] = edges.get(outEdge[i]).weight;
+		}
+	}
+	
+	/**
+	 * Checks if a road and its end intersection belong to the road network
+	 */
+	private static boolean isMember(RoadNetwork network, RoadEdge edge) {
+		List<RoadNode> nodes = network.getNodes();
+		List<RoadEdge> edges = network.getEdges();
+		RoadNode end = edge.getEndNode();
+		return edge.id>=0 && edge.id<edges.size() && edges.get(edge.id)==edge 
+			&& end.id>=0 && end.id<nodes.size() && nodes.get(end.id)==end;
+	}
+	
+	/**
+	 * Returns the straight-line distance between two intersections
+	 * @param node1 Identifier of the first intersection
+	 * @param node2 Identifier of the second intersection
+	 * @return Distance
+	 */
+	public double getDistance(int node1, int node2) {
+		return Math.sqrt((x[node1]-x[node2])*(x[node1]-x[node2]) + (y[node1]-y[node2])*(y[node1]-y[node2]));
+	}
+	
+	/**
+	 * Calculates the strongly connected components of the graph (iterative version of Tarjan's algorithm)
+	 * @return Component index of each intersection, components are numbered in reverse topological order
+	 */
+	public int[] getComponents() {
+		
+		int[] component = new int[nodeCount];
+		int[] index = new int[nodeCount];
+		int[] lowLink = new int[nodeCount];
+		boolean[] onStack = new boolean[nodeCount];
+		int[] stack = new int[nodeCount];
+		int stackSize = 0;
+		// depth-first search state: intersection and position in its outgoing roads
+		int[] callNode = new int[nodeCount];
+		int[] callEdge = new int[nodeCount];
+		int callSize = 0;
+		
+		Arrays.fill(index, -1);
+		int nextIndex = 0;
+		int components = 0;
+		
+		for (int root=0; root<nodeCount; root++) {
+			if (index[root]!=-1) continue;
+			
+			index[root] = lowLink[root] = nextIndex++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			callNode[callSize] = root;
+			callEdge[callSize] = outStart[root];
+			callSize++;
+			
+			while (callSize>0) {
+				int node = callNode[callSize-1];
+				
+				if (callEdge[callSize-1]<outStart[node+1]) {
+					int next = outTarget[callEdge[callSize-1]++];
+					if (index[next]==-1) {
+						// descend
+						index[next] = lowLink[next] = nextIndex++;
+						stack[stackSize++] = next;
+						onStack[next] = true;
+						callNode[callSize] = next;
+						callEdge[callSize] = outStart[next];
+						callSize++;
+					} else if (onStack[next]) {
+						lowLink[node] = Math.min(lowLink[node], index[next]);
+					}
+				} else {
+					// all outgoing roads visited
+					if (lowLink[node]==index[node]) {
+						int member;
+						do {
+							member = stack[--stackSize];
+							onStack[member] = false;
+							component[member] = components;
+						} while (member!=node);
+						components++;
+					}
+					callSize--;
+					if (callSize>0) {
+						int parent = callNode[callSize-1];
+						lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+					}
+				}
+			}
+		}
+		
+		return component;
+	}
+	
+	/**
+	 * Calculates the number of intersections reachable from each intersection (including the intersection itself).
+	 * The graph is condensed into its strongly connected components, all intersections of a component 
+	 * reach the same intersections.
+	 * @return Number of reachable intersections for each intersection
+	 */
+	public int[] getReachableCounts() {
+		
+		int[] component = getComponents();
+		int components = 0;
+		for (int i=0; i<nodeCount; i++) {
+			components = Math.max(components, component[i]+1);
+		}
+		
+		// size of the components
+		int[] size = new int[components];
+		for (int i=0; i<nodeCount; i++) {
+			size[component[i]]++;
+		}
+		
+		// roads between the components (compressed sparse row format)
+		int[] start = new int[components+1];
+		int[] mark = new int[components];
+		Arrays.fill(mark, -1);
+		ArrayList<int[]> links = new ArrayList<int[]>();
+		int[][] members = new int[components][];
+		int[] memberCount = new int[components];
+		for (int c=0; c<components; c++) {
+			members[c] = new int[size[c]];
+		}
+		for (int i=0; i<nodeCount; i++) {
+			members[component[i]][memberCount[component[i]]++] = i;
+		}
+		for (int c=0; c<components; c++) {
+			mark[c] = c;
+			for (int m=0; m<members[c].length; m++) {
+				int node = members[c][m];
+				for (int e=outStart[node]; e<outStart[node+1]; e++) {
+					int target = component[outTarget[e]];
+					if (mark[target]!=c) {
+						mark[target] = c;
+						links.add(new int[] {c, target});
+					}
+				}
+			}
+		}
+		int[] linkTarget = new int[links.size()];
+		for (int i=0; i<links.size(); i++) {
+			start[links.get(i)[0]+1]++;
+		}
+		for (int c=0; c<components; c++) {
+			start[c+1] += start[c];
+		}
+		int[] next = Arrays.copyOf(start, components);
+		for (int i=0; i<links.size(); i++) {
+			linkTarget[next[links.get(i)[0]]++] = links.get(i)[1];
+		}
+		
+		// number of reachable intersections of each component (search in the condensed graph)
+		int[] reachable = new int[components];
+		int[] visited = new int[components];
+		Arrays.fill(visited, -1);
+		int[] queue = new int[components];
+		for (int c=0; c<components; c++) {
+			int head = 0, tail = 0;
+			queue[tail++] = c;
+			visited[c] = c;
+			while (head<tail) {
+				int current = queue[head++];
+				reachable[c] += size[current];
+				for (int i=start[current]; i<start[current+1]; i++) {
+					if (visited[linkTarget[i]]!=c) {
+						visited[linkTarget[i]] = c;
+						queue[tail++] = linkTarget[i];
+					}
+				}
+			}
+		}
+		
+		int[] counts = new int[nodeCount];
+		for (int i=0; i<nodeCount; i++) {
+			counts[i] = reachable[component[i]];
+		}
+		return counts;
+	}
+	
+}
@@ -32,35 +32,43 @@
 package model;
 
 
+import java.io.*;
 import java.util.*;
 
+import mobility.*;
+
 /**
  * RoadNetwork models a network of roads and intersections.
  * The road network is represented as a directed graph.
  * Intersections are nodes and roads are directed edges of the graph.
- * Dijkstra's shortest path algorithm is used to search shortest paths between two intersections in the network.
+ * The route calculation traverses a compact snapshot of the graph (see RoadGraph).
+ * The A* algorithm is used to search shortest paths between two intersections in the network,
+ * or a contraction hierarchy or landmarks (bidirectional ALT search) if they have been prepared for the network. 
+ * Optionally, the shortest path trees of the source intersections are cached.
  * @author psommer
  *
  */
 public class RoadNetwork  {
 
-	/** unique identifier for roads and intersections */
-	static int uniqueId = 0;
-	
-	/** compares two nodes used by the iteration by comparing Dijkstra costs **/
-	private Comparator<RoadNode> comparator = new Comparator<RoadNode>() {
-		public int compare(RoadNode node1, RoadNode node2) {
-	     	return Double.compare(node1.dijkstraCost, node2.dijkstraCost);
-	    }
-	};
-	
 	/** list of intersections */
 	List<RoadNode> nodes = null;
 	/** list of roads */
 	List<RoadEdge> edges = null;
 	
-	/** priority queue to manage active nodes (Dijkstra's algorithm)**/
-	private PriorityQueue<RoadNode> queue = null;
+	/** snapshot of the graph for the route calculation (null if not created yet) */
+	private volatile RoadGraph graph = null;
+	/** search state of the shortest path algorithm for each thread **/
+	private ThreadLocal<RouteQuery> queries = null;
+	/** lower bound of the road weight per unit of distance between the intersections (-1 if not calculated yet) */
+	private volatile double minWeightPerDistance = -1;
+	/** contraction hierarchy for shortest path queries (null if the A* algorithm is used) */
+	private ContractionHierarchy hierarchy = null;
+	/** landmarks for the bidirectional ALT search (null if not used) */
+	private Landmarks landmarks = null;
+	/** cache of shortest path trees (null if no trees are cached) */
+	private PathTreeCache treeCache = null;
+	/** number of weight updates of the roads (see updateWeights()) */
+	private int weightsVersion = 0;
 	
 	/**
 	 * Creates a RoadNetwork out of the specified intersections and roads
@@ -70,8 +78,39 @@ public class RoadNetwork  {
 	public RoadNetwork(Collection<RoadNode> nodes, Collection <RoadEdge> edges) {
 		this.nodes = new ArrayList<RoadNode>(nodes);
 		this.edges = new ArrayList<RoadEdge>(edges);
-		// initialize priority queue for the dijkstra's algorithm
-		queue = new PriorityQueue<RoadNode>(nodes.size(), comparator);
+		createQueries();
+		numberNodes();
+		numberEdges();
+	}
+	
+	/**
+	 * Creates the search state of the shortest path algorithm, which is allocated for each thread on its first query
+	 */
+	private void createQueries() {
+		final int nodeCount = nodes.size();
+		queries = new ThreadLocal<RouteQuery>() {
+			protected RouteQuery initialValue() {
+				return new RouteQuery(nodeCount);
+			}
+		};
+	}
+	
+	/**
+	 * Assigns unique identifiers (list index) to the intersections of this network
+	 */
+	private void numberNodes() {
+		for (int i=0; i<nodes.size(); i++) {
+			nodes.get(i).id = i;
+		}
+	}
+	
+	/**
+	 * Assigns unique identifiers (list index) to the roads of this network
+	 */
+	private void numberEdges() {
+		for (int i=0; i<edges.size(); i++) {
+			edges.get(i).id = i;
+		}
 	}
 	
 	/**
@@ -80,7 +119,12 @@ public class RoadNetwork  {
 	 */
 	public void setNodes(Collection<RoadNode> nodes) {
 		this.nodes = new ArrayList<RoadNode>(nodes);
-		queue = new PriorityQueue<RoadNode>(nodes.size(), comparator);
+		createQueries();
+		graph = null;
+		hierarchy = null;
+		landmarks = null;
+		treeCache = null;
+		numberNodes();
 	}
 	
 	/**
@@ -89,6 +133,12 @@ public class RoadNetwork  {
 	 */
 	public void setEdges(Collection<RoadEdge> edges) {
 		this.edges = new ArrayList<RoadEdge>(edges);
+		minWeightPerDistance = -1;
+		graph = null;
+		hierarchy = null;
+		landmarks = null;
+		treeCache = null;
+		numberEdges();
 	}
 	
 	/**
@@ -108,72 +158,415 @@ public class RoadNetwork  {
 	}
 	
 	/**
-	 * Dijkstra's shortest path algorithm.
-	 * Calculates the shortest path between source and destination.
+	 * Returns the snapshot of the graph in compressed sparse row format, which is created on the first call.
+	 * The snapshot has to be updated (see updateWeights()) if the weights of the roads change.
+	 * @return Snapshot of the road network
+	 */
+	public RoadGraph getGraph() {
+		RoadGraph result = graph;
+		if (result==null) {
+			synchronized (this) {
+				result = graph;
+				if (result==null) {
+					result = new RoadGraph(this);
+					graph = result;
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Applies changed weights of the roads to the route calculation. The new snapshot of the graph shares its 
+	 * structure with the previous one, only the weights are copied. The contraction hierarchy is removed since it 
+	 * depends on the weights, as are the landmarks if a weight dropped below its weight at their preprocessing. 
+	 * The cached shortest path trees are replaced by an empty cache of this network.
+	 * Searches which have already started continue on the previous snapshot.
+	 */
+	public void updateWeights() {
+		weightsVersion++;
+		applyWeights();
+	}
+	
+	/**
+	 * Replaces the snapshot of the graph and the structures depending on the weights (see updateWeights())
+	 */
+	private void applyWeights() {
+		synchronized (this) {
+			graph = new RoadGraph(getGraph(), edges);
+			minWeightPerDistance = -1;
+			hierarchy = null;
+			if (landmarks!=null && !landmarks.isValid(graph)) landmarks = null;
+			if (treeCache!=null) treeCache = new PathTreeCache(treeCache.capacity);
+		}
+	}
+	
+	/**
+	 * Calculates a fingerprint of the road network from the positions of the intersections and the 
+	 * start, end, length, speed limit and weight of all roads, e.g. to check if a snapshot belongs to this network.
+	 * @return Fingerprint of the road network
+	 */
+	public long getFingerprint() {
+		long hash = nodes.size();
+		for (int i=0; i<nodes.size(); i++) {
+			RoadNode node = nodes.get(i);
+			hash = 31*hash + Double.doubleToLongBits(node.x);
+			hash = 31*hash + Double.doubleToLongBits(node.y);
+		}
+		for (int i=0; i<edges.size(); i++) {
+			RoadEdge edge = edges.get(i);
+			hash = 31*hash + edge.nodeA.id;
+			hash = 31*hash + edge.nodeB.id;
+			hash = 31*hash + Double.doubleToLongBits(edge.length);
+			hash = 31*hash + Double.doubleToLongBits(edge.maxSpeed);
+			hash = 31*hash + Double.doubleToLongBits(edge.weight);
+		}
+		return hash;
+	}
+	
+	/**
+	 * Returns the number of weight updates of the roads, e.g. to check if a route has been calculated with the current weights
+	 * @return Number of calls to updateWeights()
+	 */
+	public int getWeightsVersion() {
+		return weightsVersion;
+	}
+	
+	/**
+	 * Sets the contraction hierarchy used for shortest path queries
+	 * @param hierarchy Contraction hierarchy of this network or null to use the A* algorithm
+	 */
+	public void setHierarchy(ContractionHierarchy hierarchy) {
+		this.hierarchy = hierarchy;
+	}
+	
+	/**
+	 * Returns the contraction hierarchy used for shortest path queries
+	 * @return Contraction hierarchy or null if the A* algorithm is used
+	 */
+	public ContractionHierarchy getHierarchy() {
+		return hierarchy;
+	}
+	
+	/**
+	 * Selects landmarks and calculates their distances for the bidirectional ALT search
+	 * @param count Number of landmarks (0 to use the A* algorithm)
+	 */
+	public void prepareLandmarks(int count) {
+		landmarks = (count>0) ? new Landmarks(getGraph(), count) : null;
+	}
+	
+	/**
+	 * Returns the landmarks used for shortest path queries
+	 * @return Landmarks or null if the bidirectional ALT search is not used
+	 */
+	public Landmarks getLandmarks() {
+		return landmarks;
+	}
+	
+	/**
+	 * Sets the landmarks used for shortest path queries
+	 * @param landmarks Landmarks prepared for this network or null to use the A* algorithm
+	 */
+	public void setLandmarks(Landmarks landmarks) {
+		this.landmarks = landmarks;
+	}
+	
+	/**
+	 * Sets the cache of shortest path trees. If a cache is set, all paths are taken from the shortest path tree 
+	 * of their source intersection (i.e. the paths do not depend on the content of the cache).
+	 * @param treeCache Cache for the shortest path trees of this network or null to disable caching
+	 */
+	public void setTreeCache(PathTreeCache treeCache) {
+		this.treeCache = treeCache;
+	}
+	
+	/**
+	 * Returns the cache of shortest path trees
+	 * @return Cache or null if no trees are cached
+	 */
+	public PathTreeCache getTreeCache() {
+		return treeCache;
+	}
+	
+	/**
+	 * Creates a copy of this road network, e.g. to run several simulations on the same roads. 
+	 * The geometry of the roads is shared between the copies, while vehicles, traffic lights and 
+	 * the state of the shortest path algorithm are separate. The order of the incoming and outgoing 
+	 * roads of all intersections is preserved. The snapshot of the graph, the contraction hierarchy, the landmarks and the cache of shortest path trees are shared as well.
+	 * @return Copy of the road network
+	 */
+	public RoadNetwork copy() {
+		
+		HashMap<RoadNode, RoadNode> nodeCopies = new HashMap<RoadNode, RoadNode>();
+		HashMap<RoadEdge, RoadEdge> edgeCopies = new HashMap<RoadEdge, RoadEdge>();
+		LinkedList<RoadNode> pending = new LinkedList<RoadNode>();
+		
+		ArrayList<RoadNode> copiedNodes = new ArrayList<RoadNode>(nodes.size());
+		for (int i=0; i<nodes.size(); i++) {
+			copiedNodes.add(copyNode(nodes.get(i), nodeCopies, pending));
+		}
+		
+		ArrayList<RoadEdge> copiedEdges = new ArrayList<RoadEdge>(edges.size());
+		for (int i=0; i<edges.size(); i++) {
+			copiedEdges.add(copyEdge(edges.get(i), nodeCopies, edgeCopies, pending));
+		}
+		
+		// connect the copied intersections (including intersections only reachable via roads)
+		RoadNode node = null;
+		while ((node=pending.poll())!=null) {
+			RoadNode copy = nodeCopies.get(node);
+			for (int i=0; i<node.inEdges.size(); i++) {
+				copy.inEdges.add(copyEdge(node.inEdges.get(i), nodeCopies, edgeCopies, pending));
+			}
+			for (int i=0; i<node.outEdges.size(); i++) {
+				copy.outEdges.add(copyEdge(node.outEdges.get(i), nodeCopies, edgeCopies, pending));
+			}
+		}
+		
+		RoadNetwork copy = new RoadNetwork(copiedNodes, copiedEdges);
+		copy.graph = graph;
+		if (hierarchy!=null) copy.hierarchy = hierarchy.copy(copy);
+		copy.landmarks = landmarks;
+		copy.treeCache = treeCache;
+		copy.weightsVersion = weightsVersion;
+		return copy;
+	}
+	
+	/**
+	 * Returns the copy of an intersection (see copy())
+	 */
+	private RoadNode copyNode(RoadNode node, HashMap<RoadNode, RoadNode> nodeCopies, LinkedList<RoadNode> pending) {
+		RoadNode copy = nodeCopies.get(node);
+		if (copy==null) {
+			copy = new RoadNode(node);
+			nodeCopies.put(node, copy);
+			pending.add(node);
+		}
+		return copy;
+	}
+	
+	/**
+	 * Returns the copy of a road (see copy())
+	 */
+	private RoadEdge copyEdge(RoadEdge edge, HashMap<RoadNode, RoadNode> nodeCopies, HashMap<RoadEdge, RoadEdge> edgeCopies, LinkedList<RoadNode> pending) {
+		RoadEdge copy = edgeCopies.get(edge);
+		if (copy==null) {
+			copy = new RoadEdge(copyNode(edge.nodeA, nodeCopies, pending), copyNode(edge.nodeB, nodeCopies, pending), edge);
+			edgeCopies.put(edge, copy);
+		}
+		return copy;
+	}
+	
+	/**
+	 * Writes the state of all traffic lights, the weights of the roads and the vehicles on all roads to a snapshot
+	 * @param out Snapshot output stream
+	 * @throws IOException
+	 */
+	public void writeState(DataOutputStream out) throws IOException {
+		out.writeInt(nodes.size());
+		out.writeInt(edges.size());
+		out.writeInt(weightsVersion);
+		for (int i=0; i<nodes.size(); i++) {
+			nodes.get(i).writeState(out);
+		}
+		for (int i=0; i<edges.size(); i++) {
+			edges.get(i).writeState(out);
+		}
+	}
+	
+	/**
+	 * Restores the state of all traffic lights, the weights of the roads and the vehicles on all roads from a snapshot
+	 * @param in Snapshot input stream
+	 * @param vehicles Vehicles by node identifier
+	 * @throws IOException
+	 */
+	public void readState(DataInputStream in, Map<Integer, MobileNode> vehicles) throws IOException {
+		if (in.readInt()!=nodes.size() || in.readInt()!=edges.size()) throw new IOException("Snapshot does not match the road network");
+		int version = in.readInt();
+		for (int i=0; i<nodes.size(); i++) {
+			nodes.get(i).readState(in);
+		}
+		for (int i=0; i<edges.size(); i++) {
+			edges.get(i).readState(in, vehicles);
+		}
+		if (version!=weightsVersion) {
+			weightsVersion = version;
+			applyWeights();
+		}
+	}
+	
+	/**
+	 * Returns a lower bound for the weight of a road per unit of the straight-line distance between its intersections, 
+	 * e.g. the inverse of the maximum speed of all roads if the road weight is the travel time.
+	 * The bound is used for the A* heuristic and is calculated on the first call.
+	 * @return Minimum weight per unit of distance
+	 */
+	public double getMinWeightPerDistance() {
+		if (minWeightPerDistance<0) {
+			double min = Double.POSITIVE_INFINITY;
+			Iterator<RoadEdge> it = edges.iterator();
+			while (it.hasNext()) {
+				RoadEdge edge = it.next();
+				double distance = edge.getStartNode().getDistance(edge.getEndNode());
+				if (distance>0) min = Math.min(min, edge.weight/distance);
+			}
+			minWeightPerDistance = (min==Double.POSITIVE_INFINITY) ? 0 : Math.max(0, min);
+		}
+		return minWeightPerDistance;
+	}
+	
+	/**
+	 * Returns the shortest path from the shortest path tree of the source intersection
+	 * (the tree is calculated and added to the cache if it is not cached yet).
+	 * @param source Start intersection of the path
+	 * @param destination End intersection of the path
+	 * @return Shortest path between source and destination or null if no such path exists
+	 */
+	private Path getTreePath(RoadNode source, RoadNode destination) {
+		
+		int[] tree = treeCache.get(source.id);
+		if (tree==null) {
+			tree = getPathTree(source);
+			treeCache.put(source.id, tree);
+		}
+		
+		if (source!=destination && tree[destination.id]==-1) return null;
+		
+		// count the roads, then fill the path backwards from the destination
+		int size = 0;
+		for (int current=destination.id; current!=source.id; current=edges.get(tree[current]).getStartNode().id) {
+			size++;
+		}
+		int[] path = new int[size];
+		int current = destination.id;
+		while (current!=source.id) {
+			path[--size] = tree[current];
+			current = edges.get(tree[current]).getStartNode().id;
+		}
+		return new Path(edges, path);
+	}
+	
+	/**
+	 * Dijkstra's shortest path algorithm without destination.
+	 * Calculates the shortest path tree of a source intersection.
+	 * @param source Source intersection
+	 * @return Identifier of the road to the parent intersection for each intersection (-1 for the source and unreachable intersections)
+	 */
+	public int[] getPathTree(RoadNode source) {
+		
+		RoadGraph graph = getGraph();
+		RouteQuery query = queries.get();
+		query.start();
+		
+		query.reach(source.id, 0, -1);
+		query.queue.update(source.id, 0);
+		
+		int id;
+		while ((id=query.queue.poll())!=-1) {
+			
+			query.settle(id);
+			
+			for (int i=graph.outStart[id]; i<graph.outStart[id+1]; i++) {
+				int relatedId = graph.outTarget[i];
+				double cost = query.cost[id] + graph.outWeight[i];
+				
+				if (!query.isSettled(relatedId) && (!query.isReached(relatedId) || query.cost[relatedId] > cost)) {
+					query.reach(relatedId, cost, graph.outEdge[i]);
+					query.queue.update(relatedId, cost);
+				}
+			}
+		}
+		
+		int[] tree = new int[nodes.size()];
+		for (int i=0; i<tree.length; i++) {
+			tree[i] = query.isReached(i) ? query.parent[i] : -1;
+		}
+		return tree;
+	}
+	
+	/**
+	 * A* shortest path algorithm.
+	 * Calculates the shortest path between source and destination. The straight-line distance to the destination 
+	 * multiplied by getMinWeightPerDistance() is used as lower bound for the remaining path cost, i.e. the 
+	 * search is directed towards the destination but returns the same optimal path as Dijkstra's algorithm.
+	 * If a cache of shortest path trees has been set, the path is taken from the shortest path tree of the source. 
+	 * Otherwise, if a contraction hierarchy has been set, the hierarchy is used instead, or the landmarks 
+	 * (bidirectional search with lower bounds from the landmarks and the straight-line distance) if they have been prepared.
 	 * @param source Start intersection of the path
 	 * @param destination End intersection of the path
 	 * @return Shortest path between source and destination or null if no such path exists
 	 */
 	public Path getPath(RoadNode source, RoadNode destination) {
 		   
-		  // initialize priority queue
-		  queue.clear();
+		  if (treeCache!=null) {
+			  return getTreePath(source, destination);
+		  }
+		  
+		  if (hierarchy!=null && hierarchy.contains(source) && hierarchy.contains(destination)) {
+			  return hierarchy.getPath(source, destination);
+		  }
+		
+		  double factor = getMinWeightPerDistance();
+		  RoadGraph graph = getGraph();
+		  
+		  if (landmarks!=null) {
+			  int[] path = landmarks.getPath(graph, factor, source.id, destination.id);
+			  return (path!=null) ? new Path(edges, path) : null;
+		  }
 		  
-		  Iterator<RoadNode> it = nodes.iterator();
-		  while (it.hasNext()) {
-			  RoadNode node = it.next();
-			  if (node==source) node.dijkstraCost = 0;
-			  else node.dijkstraCost = Double.POSITIVE_INFINITY;
-	          node.dijkstraVisited = false;
-	          node.dijkstraEdgeParent = null;
-	          queue.add(node);
-	      }
+		  int target = destination.id;
 		  
+		  // start a new search with the search state of this thread
+		  RouteQuery query = queries.get();
+		  query.start();
 		  
-		  RoadNode current = null;
+		  query.reach(source.id, 0, -1);
+		  query.queue.update(source.id, factor*graph.getDistance(source.id, target));
 		  
 		  while (true) {
 			 
 			  // poll first node from queue
-			  current = queue.poll();
+			  int id = query.queue.poll();
 			  
-			  if (current==null || current==destination || current.dijkstraCost == Double.POSITIVE_INFINITY) break;
+			  if (id==-1) {
+				  // no path found
+				  return null;
+			  }
+			  
+			  if (id==target) break;
 			  
-			  current.dijkstraVisited = true;
+			  query.settle(id);
 			   
-			  for (Iterator<RoadEdge> itr = current.getOutEdges().iterator(); itr.hasNext();) {
+			  for (int i=graph.outStart[id]; i<graph.outStart[id+1]; i++) {
 			      
-				  RoadEdge outgoingEdge = itr.next();
-				  RoadNode relatedNode = outgoingEdge.getEndNode();
+				  int relatedId = graph.outTarget[i];
+				  double cost = query.cost[id] + graph.outWeight[i];
 				  
 			      //if cost less than current cost of related node, update 
-			      if (!relatedNode.dijkstraVisited && relatedNode.dijkstraCost > (current.dijkstraCost + outgoingEdge.weight)) {
+			      if (!query.isSettled(relatedId) && (!query.isReached(relatedId) || query.cost[relatedId] > cost)) {
 			    	  
-			    	  relatedNode.dijkstraCost = current.dijkstraCost + outgoingEdge.weight;
-			    	  relatedNode.dijkstraEdgeParent = outgoingEdge;
+			    	  query.reach(relatedId, cost, graph.outEdge[i]);
 			          // update cost in the priority queue
-			    	  queue.remove(relatedNode);
-			    	  queue.add(relatedNode);  
+			    	  query.queue.update(relatedId, cost + factor*graph.getDistance(relatedId, target));
 			      }  
 			  }
 			 
 		  }
 		  
-		  //finished
-		  if (current==null || current.dijkstraCost == Double.POSITIVE_INFINITY) {
-			  // no path found
-			  //System.out.println("no path found");
-		 } else if (current==destination) {
-			  // path found
-			  LinkedList<RoadEdge> path = new LinkedList<RoadEdge>();
-			  while (current!=source) {
-				  path.addFirst(current.dijkstraEdgeParent);
-				  current = current.dijkstraEdgeParent.getStartNode();
-			  }
-			  
-			  return new Path(path);
+		  // path found
+		  int size = 0;
+		  for (int current=target; current!=source.id; current=graph.edgeSource[query.parent[current]]) {
+			  size++;
+		  }
+		  int[] path = new int[size];
+		  int current = target;
+		  while (current!=source.id) {
+			  path[--size] = query.parent[current];
+			  current = graph.edgeSource[query.parent[current]];
 		  }
-		  return null;
+		  
+		  return new Path(edges, path);
 	}
 	
 }
@@ -31,6 +31,7 @@
 
 package model;
 
+import java.io.*;
 import java.util.*;
 import mobility.*;
 
@@ -41,7 +42,7 @@ import mobility.*;
  */
 public class RoadNode extends Position {
 
-	/** unique identifier for this intersection */
+	/** unique identifier for this intersection (assigned by the road network) */
 	public int id = 0;
 	
 	/** list of outgoing roads */
@@ -49,13 +50,6 @@ public class RoadNode extends Position {
 	/** list of incoming roads */
 	List<RoadEdge> inEdges = new ArrayList<RoadEdge>();
 	
-	/** indicates that node has already been visited in the Dijkstra's algorithm */
-	boolean dijkstraVisited = false;
-	/** current cost of this node in the Dijkstra's algorithm */
-	double dijkstraCost = Double.MAX_VALUE;
-	/** edge to parent node in the Dijkstra's algorithm */
-	RoadEdge dijkstraEdgeParent = null;
-	
 	/** defines if this intersection is controlled by a traffic light */
 	public boolean trafficLight = false;
 	/** defines the index of the incoming road which has currently a green traffic light */
@@ -79,7 +73,20 @@ public class RoadNode extends Position {
 	public RoadNode(double x, double y) {
 		this.x = x;
 		this.y = y;
-		id = RoadNetwork.uniqueId++;
+	}
+	
+	/**
+	 * Creates a copy of the given intersection without any roads.
+	 * The traffic light configuration is copied, the state of the traffic light is not.
+	 * @param node Intersection to copy
+	 */
+	public RoadNode(RoadNode node) {
+		this(node.x, node.y);
+		id = node.id;
+		trafficLight = node.trafficLight;
+		greenLight = node.greenLight;
+		greenLightOpposite = node.greenLightOpposite;
+		slices = node.slices;
 	}
 	
 	/**
@@ -183,75 +190,112 @@ public class RoadNode extends Position {
 				// increase counter
 				counter++;
 			} else {
-				
-				// set the traffic light of the current active street to red
-				getInEdges().get(greenLight).setTrafficLight(true);
-				
-				// get next traffic light in a round robin way
-				greenLight++;
-				if (greenLight==getInEdges().size()) greenLight = 0;
-				
-				// set the duration of the green phase for the current traffic light
-				currentSlice = (int)Math.round(slices[greenLight]);
-				// reset counter
-				counter = 0;
-				// set traffic light to green
-				getInEdges().get(greenLight).setTrafficLight(false);	
-				
-				
-				// traffic light in opposite direction (only for more than 4 roads)
-		/*
-				// set the traffic light of the current active street to red
-				getInEdges().get(greenLightOpposite).setTrafficLight(true);
-				
-				// get next traffic light in a round robin way
-				greenLightOpposite++;
-				if (greenLightOpposite==getInEdges().size()) greenLightOpposite = 0;
-			
-				// set traffic light to green
-				getInEdges().get(greenLightOpposite).setTrafficLight(false);	
-				
-				System.out.println("Green lights: " + greenLight + " " + greenLightOpposite);
-				
-		*/
+				switchLight();
 			}
 			
 		} else {
 			// first come, first served
-			
-			double minDistance = Double.MAX_VALUE;
-			double vehicleDistance = 0;
-			int roadIndex = -1;
-			
-			int index = 0;
-			Iterator<RoadEdge> it = getInEdges().iterator();
-			while (it.hasNext()) {
-			
-				RoadEdge road = it.next();
-				MobileNode vehicle = road.getForemostVehicle();
-				if (vehicle!=null)  {
-					vehicleDistance = road.length - vehicle.position;
-					if (vehicleDistance<minDistance) {
-						minDistance = vehicleDistance;
-						roadIndex = index; 
-					}
+			firstComeFirstServed();
+		}
+		
+	}
+	
+	/**
+	 * Ends the current green phase and switches the traffic light of the next incoming road to green.
+	 */
+	void switchLight() {
+		
+		// set the traffic light of the current active street to red
+		getInEdges().get(greenLight).setTrafficLight(true);
+		
+		// get next traffic light in a round robin way
+		greenLight++;
+		if (greenLight==getInEdges().size()) greenLight = 0;
+		
+		// set the duration of the green phase for the current traffic light
+		currentSlice = (int)Math.round(slices[greenLight]);
+		// reset counter
+		counter = 0;
+		// set traffic light to green
+		getInEdges().get(greenLight).setTrafficLight(false);	
+		
+		
+		// traffic light in opposite direction (only for more than 4 roads)
+/*
+		// set the traffic light of the current active street to red
+		getInEdges().get(greenLightOpposite).setTrafficLight(true);
+		
+		// get next traffic light in a round robin way
+		greenLightOpposite++;
+		if (greenLightOpposite==getInEdges().size()) greenLightOpposite = 0;
+	
+		// set traffic light to green
+		getInEdges().get(greenLightOpposite).setTrafficLight(false);	
+		
+		System.out.println("Green lights: " + greenLight + " " + greenLightOpposite);
+		
+*/
+	}
+	
+	/**
+	 * Switches the incoming road with the vehicle closest to the intersection to green and all other roads to red 
+	 * (intersections without traffic light).
+	 * @return True if a road with a vehicle has been switched to green
+	 */
+	boolean firstComeFirstServed() {
+		
+		double minDistance = Double.MAX_VALUE;
+		double vehicleDistance = 0;
+		int roadIndex = -1;
+		
+		int index = 0;
+		Iterator<RoadEdge> it = getInEdges().iterator();
+		while (it.hasNext()) {
+		
+			RoadEdge road = it.next();
+			MobileNode vehicle = road.getForemostVehicle();
+			if (vehicle!=null)  {
+				vehicleDistance = road.length - vehicle.position;
+				if (vehicleDistance<minDistance) {
+					minDistance = vehicleDistance;
+					roadIndex = index; 
 				}
-				index++;
-				
-				// switch traffic light to red
-				road.setTrafficLight(true);
-				
 			}
+			index++;
 			
-			// switch traffic light to green
-			if (roadIndex!=-1) getInEdges().get(roadIndex).setTrafficLight(false);
+			// switch traffic light to red
+			road.setTrafficLight(true);
 			
 		}
 		
+		// switch traffic light to green
+		if (roadIndex!=-1) getInEdges().get(roadIndex).setTrafficLight(false);
 		
-		
-		
+		return roadIndex!=-1;
 	}
 	
+	/**
+	 * Writes the state of the traffic light to a snapshot
+	 * @param out Snapshot output stream
+	 * @throws IOException
+	 */
+	public void writeState(DataOutputStream out) throws IOException {
+		out.writeInt(greenLight);
+		out.writeInt(greenLightOpposite);
+		out.writeInt(counter);
+		out.writeInt(currentSlice);
+	}
+	
+	/**
+	 * Restores the state of the traffic light from a snapshot
+	 * @param in Snapshot input stream
+	 * @throws IOException
+	 */
+	public void readState(DataInputStream in) throws IOException {
+		greenLight = in.readInt();
+		greenLightOpposite = in.readInt();
+		counter = in.readInt();
+		currentSlice = in.readInt();
+	}
 
 }
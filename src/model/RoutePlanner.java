@@ -0,0 +1,149 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package model;
+
+import java.util.concurrent.*;
+
+/**
+ * RoutePlanner calculates routes in the road network on background threads, e.g. the next trip of a vehicle 
+ * while it is still driving on the last road of its current trip. The simulation only picks up the calculated 
+ * path when it is needed, so the route calculation overlaps with the update of the vehicles.
+ * 
+ * The weights of the roads must not be changed while routes are calculated (see await()).
+ * @author psommer
+ *
+ */
+public class RoutePlanner {
+
+	/** road network */
+	RoadNetwork network = null;
+	/** background threads */
+	ExecutorService executor = null;
+	/** number of submitted routes which are not calculated yet */
+	int pending = 0;
+	/** number of picked up routes */
+	long routes = 0;
+	/** number of routes which were already calculated when they were picked up */
+	long ready = 0;
+	
+	/**
+	 * Creates a route planner
+	 * @param network Road network
+	 * @param threads Number of background threads (0 = number of available processors)
+	 */
+	public RoutePlanner(RoadNetwork network, int threads) {
+		this.network = network;
+		if (threads<=0) threads = Runtime.getRuntime().availableProcessors();
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "RoutePlanner");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Starts the calculation of the shortest path between two intersections
+	 * @param source Start intersection of the path
+	 * @param destination End intersection of the path
+	 * @return Pending path (see getPath())
+	 */
+	public Future<Path> submit(final RoadNode source, final RoadNode destination) {
+		synchronized (this) {
+			pending++;
+		}
+		return executor.submit(new Callable<Path>() {
+			public Path call() {
+				try {
+					return network.getPath(source, destination);
+				} finally {
+					synchronized (RoutePlanner.this) {
+						pending--;
+						RoutePlanner.this.notifyAll();
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Returns a submitted path, waits for its calculation if necessary. 
+	 * If the calculation failed, the path is calculated on the calling thread.
+	 * @param path Pending path returned by submit()
+	 * @param source Start intersection of the path
+	 * @param destination End intersection of the path
+	 * @return Shortest path between source and destination or null if no such path exists
+	 */
+	public Path getPath(Future<Path> path, RoadNode source, RoadNode destination) {
+		boolean done = path.isDone();
+		synchronized (this) {
+			routes++;
+			if (done) ready++;
+		}
+		try {
+			return path.get();
+		} catch (Exception e) {
+			System.err.println("Error calculating route in the background: " + e.getMessage());
+			return network.getPath(source, destination);
+		}
+	}
+	
+	/**
+	 * Waits until all submitted paths are calculated, e.g. before the weights of the roads are changed
+	 */
+	public synchronized void await() {
+		while (pending>0) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Stops the background threads
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Returns statistics of the route planner
+	 */
+	public synchronized String toString() {
+		return "Route planner: " + routes + " routes, " + String.format("%.2f", routes>0 ? 1.0*ready/routes : 0) + " ready when needed";
+	}
+	
+}
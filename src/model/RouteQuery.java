@@ -0,0 +1,123 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package model;
+
+import java.util.*;
+
+/**
+ * RouteQuery holds the state of a shortest path search in a road network, indexed by the identifiers 
+ * of the intersections. The state is reused for the following searches of the same thread: instead of 
+ * resetting the state of all intersections, each search has a new number and the state of an intersection 
+ * is only valid if it has been set in the current search.
+ * @author psommer
+ *
+ */
+class RouteQuery {
+
+	/** number of the current search */
+	int epoch = 0;
+	/** search in which each intersection has been reached */
+	int[] reached = null;
+	/** search in which each intersection has been settled */
+	int[] settled = null;
+	/** cost from the source to each intersection */
+	double[] cost = null;
+	/** identifier of the road to the parent intersection of each intersection */
+	int[] parent = null;
+	/** active intersections ordered by their estimated path cost */
+	IntHeap queue = null;
+	
+	/**
+	 * Creates the state for searches in a road network
+	 * @param nodeCount Number of intersections
+	 */
+	RouteQuery(int nodeCount) {
+		reached = new int[nodeCount];
+		settled = new int[nodeCount];
+		cost = new double[nodeCount];
+		parent = new int[nodeCount];
+		queue = new IntHeap(nodeCount);
+	}
+	
+	/**
+	 * Starts a new search, i.e. invalidates the state of all intersections
+	 */
+	void start() {
+		if (epoch==Integer.MAX_VALUE) {
+			// reset the state of all intersections before the counter overflows
+			Arrays.fill(reached, 0);
+			Arrays.fill(settled, 0);
+			epoch = 0;
+		}
+		epoch++;
+		queue.clear();
+	}
+	
+	/**
+	 * Checks if an intersection has been reached in the current search
+	 * @param id Intersection identifier
+	 * @return True if the cost of the intersection is valid
+	 */
+	boolean isReached(int id) {
+		return reached[id]==epoch;
+	}
+	
+	/**
+	 * Checks if an intersection has been settled in the current search
+	 * @param id Intersection identifier
+	 * @return True if the shortest path to the intersection is known
+	 */
+	boolean isSettled(int id) {
+		return settled[id]==epoch;
+	}
+	
+	/**
+	 * Sets the cost and the parent road of an intersection in the current search
+	 * @param id Intersection identifier
+	 * @param value Cost from the source
+	 * @param edge Identifier of the road to the parent intersection (-1 for the source)
+	 */
+	void reach(int id, double value, int edge) {
+		reached[id] = epoch;
+		cost[id] = value;
+		parent[id] = edge;
+	}
+	
+	/**
+	 * Marks an intersection as settled in the current search
+	 * @param id Intersection identifier
+	 */
+	void settle(int id) {
+		settled[id] = epoch;
+	}
+	
+}
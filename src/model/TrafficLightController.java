@@ -0,0 +1,181 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package model;
+
+import java.util.*;
+
+import mobility.*;
+
+/**
+ * TrafficLightController updates the traffic lights of a road network only when their state can change, 
+ * instead of calling next() of every intersection in every step.
+ * The end of the green phase of an intersection with traffic lights follows from the length of its time 
+ * slices, the intersection is therefore scheduled on a timing wheel and only updated when its phase ends.
+ * Intersections without traffic lights (first come, first served) are only evaluated if a vehicle is on 
+ * one of their incoming roads, or if they switched a road to green in the previous step. 
+ * The cost per step thus depends on the traffic and not on the size of the network. 
+ * The state of the traffic lights is identical to the update of all intersections in every step.
+ * @author psommer
+ *
+ */
+public class TrafficLightController {
+
+	/** intersections with traffic lights */
+	List<RoadNode> signals = new ArrayList<RoadNode>();
+	/** intersections without traffic lights */
+	List<RoadNode> unsignalled = new ArrayList<RoadNode>();
+	/** intersections with traffic lights whose green phase ends in a step, indexed by the step modulo the wheel size */
+	List<ArrayList<RoadNode>> wheel = new ArrayList<ArrayList<RoadNode>>();
+	/** step in which the green phase of an intersection ends (indexed by the intersection id) */
+	long[] phaseEnd = null;
+	/** number of steps since the schedule has been created */
+	long step = 0;
+	/** intersections without traffic lights which are evaluated in the current step */
+	List<RoadNode> active = new ArrayList<RoadNode>();
+	/** intersections without traffic lights which have a road switched to green */
+	List<RoadNode> green = new ArrayList<RoadNode>();
+	/** step in which an intersection has been added to the active intersections (indexed by the intersection id) */
+	long[] activeStep = null;
+	
+	/**
+	 * Creates the controller for the traffic lights of the given road network. 
+	 * The traffic lights must be initialized (see RoadNode.init()).
+	 * @param network Road network
+	 */
+	public TrafficLightController(RoadNetwork network) {
+		
+		int maxSlice = 0;
+		
+		Iterator<RoadNode> it = network.getNodes().iterator();
+		while (it.hasNext()) {
+			RoadNode node = it.next();
+			if (node.trafficLight) {
+				signals.add(node);
+				for (int i=0; i<node.slices.length; i++) {
+					maxSlice = Math.max(maxSlice, node.slices[i]);
+				}
+			} else {
+				unsignalled.add(node);
+			}
+		}
+		
+		// a phase lasts at most maxSlice+1 steps, the end of the phase never falls into the current slot of the wheel
+		for (int i=0; i<maxSlice+2; i++) {
+			wheel.add(new ArrayList<RoadNode>());
+		}
+		phaseEnd = new long[network.getNodes().size()];
+		activeStep = new long[network.getNodes().size()];
+		
+		schedule();
+	}
+	
+	/**
+	 * Creates the schedule from the current state of the traffic lights, e.g. after a snapshot has been restored.
+	 * All intersections without traffic lights are evaluated in the next step.
+	 */
+	public void schedule() {
+		
+		step = 0;
+		for (int i=0; i<wheel.size(); i++) {
+			wheel.get(i).clear();
+		}
+		
+		for (int i=0; i<signals.size(); i++) {
+			RoadNode node = signals.get(i);
+			// the counter of the intersection is increased until it reaches the length of the time slice
+			phaseEnd[node.id] = node.currentSlice - node.counter;
+			wheel.get((int)(phaseEnd[node.id] % wheel.size())).add(node);
+		}
+		
+		green.clear();
+		green.addAll(unsignalled);
+		Arrays.fill(activeStep, -1);
+	}
+	
+	/**
+	 * Updates the traffic lights for the next simulation step.
+	 * @param vehicles Vehicles on the roads of the network
+	 */
+	public void next(List<MobileNode> vehicles) {
+		
+		// intersections with traffic lights whose phase ends in this step
+		ArrayList<RoadNode> slot = wheel.get((int)(step % wheel.size()));
+		for (int i=0; i<slot.size(); i++) {
+			RoadNode node = slot.get(i);
+			node.switchLight();
+			phaseEnd[node.id] = step + node.currentSlice + 1;
+			wheel.get((int)(phaseEnd[node.id] % wheel.size())).add(node);
+		}
+		slot.clear();
+		
+		// intersections without traffic lights which are approached by a vehicle or have to switch a road back to red
+		active.clear();
+		for (int i=0; i<green.size(); i++) {
+			activate(green.get(i));
+		}
+		for (int i=0; i<vehicles.size(); i++) {
+			RoadEdge road = vehicles.get(i).road;
+			if (road!=null && !road.nodeB.trafficLight) activate(road.nodeB);
+		}
+		
+		green.clear();
+		for (int i=0; i<active.size(); i++) {
+			RoadNode node = active.get(i);
+			if (node.firstComeFirstServed()) green.add(node);
+		}
+		
+		step++;
+	}
+	
+	/**
+	 * Adds an intersection to the intersections evaluated in the current step (only once per step)
+	 * @param node Intersection without traffic lights
+	 */
+	void activate(RoadNode node) {
+		if (activeStep[node.id]!=step) {
+			activeStep[node.id] = step;
+			active.add(node);
+		}
+	}
+	
+	/**
+	 * Updates the counters of the intersections with traffic lights, which are not increased in every step by the 
+	 * controller. Required before the state of the traffic lights is written to a snapshot.
+	 */
+	public void synchronize() {
+		for (int i=0; i<signals.size(); i++) {
+			RoadNode node = signals.get(i);
+			node.counter = (int)(node.currentSlice - (phaseEnd[node.id] - step));
+		}
+	}
+	
+}
@@ -66,32 +66,74 @@ public final class NAMFormatter extends TraceFormatter {
 	}
 	
 	
+	/** BufferedWriter for the node mobility traces (temporary file) */
+	BufferedWriter movementWriter = null;
+	/** temporary file for the node mobility traces */
+	File movementFile = null;
+	/** node id set */
+	HashSet<Integer> nodes = new HashSet<Integer>();
+	
+	
+	/**
+	 * Creates a new NAMFormatter
+	 * @param context Simulation which uses this formatter
+	 */
+	public NAMFormatter(SimulationContext context) {
+		super(context);
+	}
+	
+	public void init() {
+		
+		// the node initialization section requires all node identifiers, node mobility
+		// traces are therefore written to a temporary file first
+		try {
+			movementFile = File.createTempFile("trace", ".nam", new File(context.outputDirectory));
+			movementFile.deleteOnExit();
+			movementWriter = new BufferedWriter(new FileWriter(movementFile));
+		} catch (Exception e) {
+			System.err.println(e.getLocalizedMessage());
+		}
+	}
+	
+	
+	protected void write(Event event) {
+		
+		// add new node id to the set
+		if (!nodes.contains(event.node.id)) nodes.add(event.node.id);
+		
+		// output node mobility traces
+		if (event.type==Event.MOVE) {
+			Move move = (Move) event;
+			try {
+				movementWriter.write("n -t " + move.time + " -s " + move.node.getId() + " -x " + move.x + " -y " + move.y + " -U " + (move.moveToX-move.x)/move.duration + " -V " + (move.moveToY-move.y)/move.duration + " -T " + move.duration + "\n");
+			} catch (Exception e) {
+				System.err.println(e.getMessage());
+			}
+		}
+	}
+	
+	
 	public void finish() {
 		
+		// write remaining events
+		super.finish();
+		
+		try {
+			movementWriter.close();
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+		
 		/** BufferedWriter for output */
 		BufferedWriter writer = null;
 		
 		try {
 			// initialize output writer
-			writer = new BufferedWriter(new FileWriter(new File(Simulator.outputDirectory + "/trace.nam")));
+			writer = new BufferedWriter(new FileWriter(new File(context.outputDirectory + "/trace.nam")));
 	    } catch (Exception e) {
 	    	System.err.println(e.getLocalizedMessage());
 	    }
 		
-	    /** node id set */
-	    HashSet<Integer> nodes = new HashSet<Integer>();
-		
-	    // sort events by start time
-	    Collections.sort(Simulator.events, new EventComparatorByStartTime());
-	    
-	    // iteration over all events
-	    Iterator<Event> it = Simulator.events.iterator();
-	    while (it.hasNext()) {
-	    	Event event = it.next();
-	    	// add new node id to the set
-	    	if (!nodes.contains(event.node.id)) nodes.add(event.node.id);
-	    }
-		
 	    // build sorted list with node identifiers
 	    List<Integer> nodeIdList = new ArrayList<Integer>(nodes);
 	    Collections.sort(nodeIdList, new NodeIdComparator());
@@ -110,25 +152,23 @@ public final class NAMFormatter extends TraceFormatter {
 
 	    // output network settings
 	    try {
-			writer.write("V -t * -v 1.0a5 -a 0\nW -t * -x " + Simulator.size + " -y " + Simulator.size +"\nA -t * -n 1 -p 0 -o 0xffffffff -c 31 -a 1\nA -t * -h 1 -m 2147483647 -s 0\n");
+			writer.write("V -t * -v 1.0a5 -a 0\nW -t * -x " + context.size + " -y " + context.size +"\nA -t * -n 1 -p 0 -o 0xffffffff -c 31 -a 1\nA -t * -h 1 -m 2147483647 -s 0\n");
 		} catch (Exception e) {
 			System.err.println(e.getMessage());
 		}
 		
-		// output node mobility traces
-		
-		it = Simulator.events.iterator();
-		while (it.hasNext()) {
-			
-			Event temp = it.next();
-			if (temp.type==Event.MOVE) {
-				Move move = (Move) temp;
-				try {
-					writer.write("n -t " + move.time + " -s " + move.node.getId() + " -x " + move.x + " -y " + move.y + " -U " + (move.moveToX-move.x)/move.duration + " -V " + (move.moveToY-move.y)/move.duration + " -T " + move.duration + "\n");
-				} catch (Exception e) {
-					System.err.println(e.getMessage());
-				}
+		// append node mobility traces
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(movementFile));
+			char[] buffer = new char[8192];
+			int length = 0;
+			while ((length = reader.read(buffer))!=-1) {
+				writer.write(buffer, 0, length);
 			}
+			reader.close();
+			movementFile.delete();
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
 		}
 		
 		// close output file
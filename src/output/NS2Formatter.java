@@ -34,8 +34,8 @@ package output;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
-import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedList;
 
 import simulator.*;
 import event.*;
@@ -51,29 +51,57 @@ public class NS2Formatter extends TraceFormatter{
 	/** maximum node identifier value */
 	int maxNodeId = 0;
 	
+	/** buffered output writer */
+	BufferedWriter writer = null;
+	/** events at the simulation start (t=0) which are needed for the node initialization section */
+	LinkedList<Event> initialEvents = new LinkedList<Event>();
+	/** indicates if the node initialization section has already been written */
+	boolean initialized = false;
 	
-	public void finish() {
-		
-		/** buffered output writer */
-		BufferedWriter writer = null;
-		
+	
+	/**
+	 * Creates a new NS2Formatter
+	 * @param context Simulation which uses this formatter
+	 */
+	public NS2Formatter(SimulationContext context) {
+		super(context);
+	}
+	
+	public void init() {
 		try {
-			writer = new BufferedWriter(new FileWriter(new File(Simulator.outputDirectory + "/trace.mov")));
+			writer = new BufferedWriter(new FileWriter(new File(context.outputDirectory + "/trace.mov")));
 	    } catch (Exception e) {
 	    	System.err.println(e.getLocalizedMessage());
 	    }
+	}
+	
+	
+	protected void write(Event event) {
+		
+		if (!initialized) {
+			if (event.time<=0) {
+				// wait until all events at t=0 are known
+				initialEvents.add(event);
+				return;
+			}
+			writeInitialization();
+		}
 		
-	    // sort events by start time
-		Collections.sort(Simulator.events, new EventComparatorByStartTime());
-	    
-	    // output node initialization section (t=0)
-	 	Iterator<Event> it = Simulator.events.iterator();
+		writeEvent(event);
+	}
+	
+	
+	/**
+	 * Writes the node initialization section (t=0) followed by the events at t=0.
+	 */
+	void writeInitialization() {
+		
+		// output node initialization section (t=0)
+	 	Iterator<Event> it = initialEvents.iterator();
 		while (it.hasNext()) {
 			
 			Event event = it.next();
 			
-			if (event.time>0) break;
-			
 			if (event.type==Event.JOIN) {
 				try {
 					writer.write("$node_(" + event.node.getId() + ") set X_ " + event.x + "\n$node_(" + event.node.getId() + ") set Y_ " + event.y + "\n$node_(" + event.node.getId() + ") set Z_ 0.0\n");
@@ -83,37 +111,51 @@ public class NS2Formatter extends TraceFormatter{
 			}
 			
 		}
-	    
-		
 		
-		// iteration over all events
-		it = Simulator.events.iterator();
+		it = initialEvents.iterator();
 		while (it.hasNext()) {
-			
-			Event event = it.next();
-			
-			if (event.type==Event.MOVE) {
-				Move move = (Move) event;
-				try {
-					writer.write("$ns_ at " + move.time + " \"$node_(" + (move.node.getId()-1) + ") setdest  " + move.moveToX + " " + move.moveToY + " " + move.velocity + "\"\n");
-				} catch (Exception e) {
-					System.err.println(e.getMessage());
-				}
-			} else if (event.type==Event.JOIN) {
-				try {
-					writer.write("$ns_ at " + event.time + " \"$node_(" + (event.node.getId()-1) + ") on\"\n");
-				} catch (Exception e) {
-					System.err.println(e.getMessage());
-				}
-			} else if (event.type==Event.LEAVE) {
-				try {
-					writer.write("$ns_ at " + event.time + " \"$node_(" + (event.node.getId()-1) + ") off\"\n");
-				} catch (Exception e) {
-					System.err.println(e.getMessage());
-				}
+			writeEvent(it.next());
+		}
+		
+		initialEvents.clear();
+		initialized = true;
+	}
+	
+	
+	/**
+	 * Writes a single event to the trace file
+	 * @param event Event
+	 */
+	void writeEvent(Event event) {
+		
+		if (event.type==Event.MOVE) {
+			Move move = (Move) event;
+			try {
+				writer.write("$ns_ at " + move.time + " \"$node_(" + (move.node.getId()-1) + ") setdest  " + move.moveToX + " " + move.moveToY + " " + move.velocity + "\"\n");
+			} catch (Exception e) {
+				System.err.println(e.getMessage());
+			}
+		} else if (event.type==Event.JOIN) {
+			try {
+				writer.write("$ns_ at " + event.time + " \"$node_(" + (event.node.getId()-1) + ") on\"\n");
+			} catch (Exception e) {
+				System.err.println(e.getMessage());
+			}
+		} else if (event.type==Event.LEAVE) {
+			try {
+				writer.write("$ns_ at " + event.time + " \"$node_(" + (event.node.getId()-1) + ") off\"\n");
+			} catch (Exception e) {
+				System.err.println(e.getMessage());
 			}
-			
 		}
+	}
+	
+	
+	public void finish() {
+		
+		// write remaining events
+		super.finish();
+		if (!initialized) writeInitialization();
 		
 		// close output file
 		try {
@@ -33,7 +33,6 @@ package output;
 
 import java.awt.Color;
 import java.io.*;
-import java.util.*;
 
 import simulator.*;
 import output.pdf.*;
@@ -47,41 +46,59 @@ import model.*;
  */
 public class PDFFormatter extends TraceFormatter {
 
+	/** events ordered by their start time (traces are grouped by node and can only be written at the end) */
+	EventStore events = new EventStore();
+	
+	
+	/**
+	 * Creates a new PDFFormatter
+	 * @param context Simulation which uses this formatter
+	 */
+	public PDFFormatter(SimulationContext context) {
+		super(context);
+	}
+	
+	protected void write(Event event) {
+		events.add(event);
+	}
 	
 	public void finish() {
 		
+		// collect remaining events
+		super.finish();
+		
 		
 		// create a PDFOutput instance
-		PDFOutput pdf = new PDFOutput(new File(Simulator.outputDirectory + "/trace.pdf"), Simulator.size);
+		PDFOutput pdf = new PDFOutput(new File(context.outputDirectory + "/trace.pdf"), context.size);
 		
 		// sort all events by node identifier and event start time
-		Collections.sort(Simulator.events, new EventComparatorByNodeIdByStartTime());
+		int[] order = events.sortByNodeIdByStartTime();
 		
 		// draw paths of all nodes
-		Iterator<Event> it = Simulator.events.iterator();
 		// identifier of the previous node
 		int previousNodeId = -1;
 		
-		while (it.hasNext()) {
+		for (int i=0; i<order.length; i++) {
 			
-			Event event = it.next();
+			int event = order[i];
+			int nodeId = events.getNodeId(event);
+			int type = events.getType(event);
 			
-			if (event.node.id!=previousNodeId) {
+			if (nodeId!=previousNodeId) {
 				// next node
 				if (previousNodeId!=-1) pdf.newPage();
 				pdf.drawBorder(2, 2);
-				pdf.drawText(0, Simulator.size + 20, "Node: " + event.node.id, Color.BLACK, 12f);
-				previousNodeId = event.node.id;
+				pdf.drawText(0, context.size + 20, "Node: " + nodeId, Color.BLACK, 12f);
+				previousNodeId = nodeId;
 			}
 			
-			if (event.type==Event.MOVE) {
-				Move temp = (Move) event;
-				Line line = new Line(temp.x, temp.y, temp.moveToX, temp.moveToY);
+			if (type==Event.MOVE) {
+				Line line = new Line(events.getX(event), events.getY(event), events.getMoveToX(event), events.getMoveToY(event));
 				pdf.drawLine(line, Color.BLACK, 1f);
-			} else if (event.type==Event.JOIN) {
-				pdf.drawCircle(event.x, event.y, Color.BLACK, 1f);
-			} else if (event.type==Event.LEAVE) {
-				pdf.drawCircle(event.x, event.y, Color.BLACK, 1f);
+			} else if (type==Event.JOIN) {
+				pdf.drawCircle(events.getX(event), events.getY(event), Color.BLACK, 1f);
+			} else if (type==Event.LEAVE) {
+				pdf.drawCircle(events.getX(event), events.getY(event), Color.BLACK, 1f);
 			}
 			
 		}
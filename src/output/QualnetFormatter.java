@@ -88,8 +88,27 @@ public class QualnetFormatter extends TraceFormatter {
 	}
 	
 	
-	/** list of waypoints */
-	List<Waypoint> waypoints = new LinkedList<Waypoint>();
+	/** waypoints of all nodes (stored as events without duration) */
+	EventStore waypoints = new EventStore();
+	
+	/**
+	 * Adds a waypoint to the list of waypoints
+	 * @param id Node identifier
+	 * @param time Time when the node is at this point
+	 * @param x x position
+	 * @param y y position
+	 */
+	void addWaypoint(int id, double time, double x, double y) {
+		waypoints.add(id, Event.PAUSE, time, 0, x, y, x, y, 0);
+	}
+	
+	/**
+	 * Creates a new QualnetFormatter
+	 * @param context Simulation which uses this formatter
+	 */
+	public QualnetFormatter(SimulationContext context) {
+		super(context);
+	}
 	
 	/**
 	 * Converts a node identifier to an IPv4 address.
@@ -105,20 +124,24 @@ public class QualnetFormatter extends TraceFormatter {
 	}
 		
 	
-	public void finish() {
-		
-		
-		/** buffered output writer */
-		BufferedWriter traceWriter = null, failureWriter = null;
-		
-		LinkedList<Waypoint> reusableNodes = new LinkedList<Waypoint>();
-		Hashtable<Integer, Integer> nodeMapping = new Hashtable<Integer, Integer>();
-		
-		double reuseAfterTime = 30;
-		int uniqueNodes = 0;
+	/** buffered output writer */
+	BufferedWriter traceWriter = null, failureWriter = null;
+	
+	/** qualnet nodes which can be reused by nodes joining the simulation */
+	LinkedList<Waypoint> reusableNodes = new LinkedList<Waypoint>();
+	/** mapping of node identifiers to qualnet nodes */
+	Hashtable<Integer, Integer> nodeMapping = new Hashtable<Integer, Integer>();
+	
+	/** qualnet nodes are reused after this time */
+	double reuseAfterTime = 30;
+	/** number of qualnet nodes */
+	int uniqueNodes = 0;
+	
+	
+	public void init() {
 		
 		try {
-			File dir = new File(Simulator.outputDirectory);
+			File dir = new File(context.outputDirectory);
 			dir.mkdirs();
 		} catch (Exception e) {
 			System.out.println(e.getMessage());
@@ -126,7 +149,7 @@ public class QualnetFormatter extends TraceFormatter {
 		
 		// output node positions
 		try {
-			traceWriter = new BufferedWriter(new FileWriter(new File(Simulator.outputDirectory + "/trace.mobility")));
+			traceWriter = new BufferedWriter(new FileWriter(new File(context.outputDirectory + "/trace.mobility")));
 	    } catch (Exception e) {
 	    	System.err.println(e.getLocalizedMessage());
 	    }
@@ -134,82 +157,82 @@ public class QualnetFormatter extends TraceFormatter {
 	    
 	    // output network interface failures
 		try {
-			failureWriter = new BufferedWriter(new FileWriter(new File(Simulator.outputDirectory + "/interface.fault")));
+			failureWriter = new BufferedWriter(new FileWriter(new File(context.outputDirectory + "/interface.fault")));
 	    } catch (Exception e) {
 	    	System.err.println(e.getLocalizedMessage());
 	    }
-	    
-	    
-	    // sort events by node id and time
-	    Collections.sort(Simulator.events, new EventComparatorByStartTime());
-	    
-	    int nodeIdTemp = 0;
-	    
-	    // iteration over all events
-	    Iterator<Event> it = Simulator.events.iterator();
-	    while (it.hasNext()) {
-	    	
-	    	Event event = it.next();
-	    	
-	    	if (event.type==Event.MOVE) {
-				Move move = (Move) event;
-				nodeIdTemp = nodeMapping.get(event.node.id);
-				waypoints.add(new Waypoint(nodeIdTemp, move.time, move.x, move.y));
-				waypoints.add(new Waypoint(nodeIdTemp, (move.time + move.duration), move.moveToX, move.moveToY));
+	}
+	
+	
+	protected void write(Event event) {
+		
+		int nodeIdTemp = 0;
+		
+		if (event.type==Event.MOVE) {
+			Move move = (Move) event;
+			nodeIdTemp = nodeMapping.get(event.node.id);
+			addWaypoint(nodeIdTemp, move.time, move.x, move.y);
+			addWaypoint(nodeIdTemp, (move.time + move.duration), move.moveToX, move.moveToY);
+		
+		} else if (event.type==Event.JOIN) {
 			
-	    	} else if (event.type==Event.JOIN) {
+			if (!reusableNodes.isEmpty() && (reusableNodes.peek().time + reuseAfterTime)<event.time) {
+				
+				// reuse node
+				
+				// add mapping
+				Waypoint leavePoint = reusableNodes.poll();
+				
 				
-				if (!reusableNodes.isEmpty() && (reusableNodes.peek().time + reuseAfterTime)<event.time) {
-					
-					// reuse node
-					
-					// add mapping
-					Waypoint leavePoint = reusableNodes.poll();
-					
-					
-					nodeIdTemp = leavePoint.id;
-					nodeMapping.put(event.node.id, nodeIdTemp);
-					
-					//System.out.println(event.node.id + " maps to qualnet node: " + nodeIdTemp);
-					//System.out.println("Reuse qualnet node " + nodeIdTemp + " at: " + event.time);
-					
-					waypoints.add(new Waypoint(nodeIdTemp, event.time, event.x, event.y));
-					
+				nodeIdTemp = leavePoint.id;
+				nodeMapping.put(event.node.id, nodeIdTemp);
+				
+				//System.out.println(event.node.id + " maps to qualnet node: " + nodeIdTemp);
+				//System.out.println("Reuse qualnet node " + nodeIdTemp + " at: " + event.time);
+				
+				addWaypoint(nodeIdTemp, event.time, event.x, event.y);
+				
+				try {
+					failureWriter.write("INTERFACE-FAULT " + getIPAddress(nodeIdTemp) + " " + String.format("%.2f", leavePoint.time) + "S " + String.format("%.2f", event.time) + "S\n");
+				} catch (Exception e) {
+					System.err.println(e.getMessage());
+				}
+				
+				
+			} else {
+				uniqueNodes++;
+				nodeIdTemp = uniqueNodes;
+				// add new node
+				nodeMapping.put(event.node.id, nodeIdTemp);
+				
+				if (event.time>0) {
 					try {
-						failureWriter.write("INTERFACE-FAULT " + getIPAddress(nodeIdTemp) + " " + String.format("%.2f", leavePoint.time) + "S " + String.format("%.2f", event.time) + "S\n");
+						failureWriter.write("INTERFACE-FAULT " + getIPAddress(nodeIdTemp) + " 0S " + String.format("%.2f", event.time) + "S\n");
 					} catch (Exception e) {
 						System.err.println(e.getMessage());
 					}
-					
-					
-				} else {
-					uniqueNodes++;
-					nodeIdTemp = uniqueNodes;
-					// add new node
-					nodeMapping.put(event.node.id, nodeIdTemp);
-					
-					if (event.time>0) {
-						try {
-							failureWriter.write("INTERFACE-FAULT " + getIPAddress(nodeIdTemp) + " 0S " + String.format("%.2f", event.time) + "S\n");
-						} catch (Exception e) {
-							System.err.println(e.getMessage());
-						}
-					}
-					
-					
 				}
 				
-				waypoints.add(new Waypoint(nodeIdTemp, event.time, event.x, event.y));
 				
-			} else if (event.type==Event.LEAVE) {
-				nodeIdTemp = nodeMapping.get(event.node.id);
-				// node leaves the simulation area -> re-use node in qualnet to keep the total number of nodes low
-				
-				// add point and time where this node left the simulation area
-				reusableNodes.addLast(new Waypoint(nodeIdTemp, event.time, event.x, event.y));
 			}
-	    	
-	    }
+			
+			addWaypoint(nodeIdTemp, event.time, event.x, event.y);
+			
+		} else if (event.type==Event.LEAVE) {
+			nodeIdTemp = nodeMapping.get(event.node.id);
+			// node leaves the simulation area -> re-use node in qualnet to keep the total number of nodes low
+			
+			// add point and time where this node left the simulation area
+			reusableNodes.addLast(new Waypoint(nodeIdTemp, event.time, event.x, event.y));
+		}
+	}
+	
+	
+	public void finish() {
+		
+		// write remaining events
+		super.finish();
+	    
 	    
 	    Iterator<Waypoint> itWay = reusableNodes.iterator();
 	    
@@ -217,9 +240,9 @@ public class QualnetFormatter extends TraceFormatter {
 	    	
 	    	Waypoint exitPoint = itWay.next();
 	    	
-	    	if (exitPoint.time<Simulator.duration) {
+	    	if (exitPoint.time<context.duration) {
 				try {
-					failureWriter.write("INTERFACE-FAULT " + getIPAddress(exitPoint.id) + " " + String.format("%.2f", exitPoint.time) + "S " + String.format("%.2f", Simulator.duration) + "S\n");
+					failureWriter.write("INTERFACE-FAULT " + getIPAddress(exitPoint.id) + " " + String.format("%.2f", exitPoint.time) + "S " + String.format("%.2f", context.duration) + "S\n");
 				} catch (Exception e) {
 					System.err.println(e.getMessage());
 				}
@@ -237,29 +260,31 @@ public class QualnetFormatter extends TraceFormatter {
 	    
 	    
 	    // sort waypoints by node id and time
-		Collections.sort(waypoints);
+		int[] order = waypoints.sortByNodeIdByStartTime();
 		
 		// iteration over all waypoints
-		Iterator<Waypoint> it2 = waypoints.iterator();
-		Waypoint previous = null;
+		int previous = -1;
 		
-		while (it2.hasNext()) {
+		for (int i=0; i<order.length; i++) {
+			
+			int current = order[i];
+			int currentId = waypoints.getNodeId(current);
+			double currentTime = waypoints.getTime(current);
 			
-			Waypoint current = it2.next();
-			if (previous==null || !(previous.id==current.id && Math.abs(previous.time-current.time)<0.01)) {
+			if (previous==-1 || !(waypoints.getNodeId(previous)==currentId && Math.abs(waypoints.getTime(previous)-currentTime)<0.01)) {
 				
-				if (previous==null || (previous.id!=current.id)) {
+				if (previous==-1 || (waypoints.getNodeId(previous)!=currentId)) {
 					// first waypoint of a new node
 					try {
 						// set initial position to the first postion in the simulation area
-						if (current.time>0) traceWriter.write(String.format("%d %.2fS (%.2f, %.2f, %.2f)\n", current.id, 0.0, current.x, current.y , 0.0000));
+						if (currentTime>0) traceWriter.write(String.format("%d %.2fS (%.2f, %.2f, %.2f)\n", currentId, 0.0, waypoints.getX(current), waypoints.getY(current) , 0.0000));
 					} catch (Exception e) {
 						System.err.println(e.getMessage());
 					}
 				}
 				
 				try {
-					traceWriter.write(String.format("%d %.2fS (%.2f, %.2f, %.2f)\n", current.id, current.time, current.x, current.y , 0.0000));
+					traceWriter.write(String.format("%d %.2fS (%.2f, %.2f, %.2f)\n", currentId, currentTime, waypoints.getX(current), waypoints.getY(current) , 0.0000));
 				} catch (Exception e) {
 					System.err.println(e.getMessage());
 				}
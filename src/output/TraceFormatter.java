@@ -32,10 +32,15 @@
 package output;
 
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 
 import event.Event;
+import event.EventCoalescer;
+import event.EventSink;
 import simulator.Module;
+import simulator.SimulationContext;
 import mobility.MobileNode;
 
 /**
@@ -43,10 +48,18 @@ import mobility.MobileNode;
  * generate mobility traces in various ouput formats. 
  * TraceFormatter implements the Module interface.
  * 
+ * Events are received while the simulation is running (EventSink interface) and passed to
+ * the write() method ordered by their start time after each sample step. Only the events of
+ * the last sample steps are kept in memory, all older events have already been written.
+ * 
+ * If the COALESCE_TOLERANCE parameter is set, consecutive MOVE and PAUSE events of a node are 
+ * merged by an EventCoalescer before they are written. A merged event lasts at most COALESCE_MAX_DURATION
+ * seconds (default 60), events are therefore kept back at most this duration.
+ * 
  * @author psommer
  *
  */
-public abstract class TraceFormatter extends Module {
+public abstract class TraceFormatter extends Module implements EventSink {
 
 	/**
 	 * Comparator for events based on the start time of the events.
@@ -89,15 +102,55 @@ public abstract class TraceFormatter extends Module {
 	}
 	
 	
-	public TraceFormatter() {
+	/** events which have not been written yet */
+	ArrayList<Event> pendingEvents = new ArrayList<Event>();
+	/** compares the pending events by their start time */
+	EventComparatorByStartTime startTimeComparator = new EventComparatorByStartTime();
+	/** merges consecutive events of a node (null if events are not merged) */
+	EventCoalescer coalescer = null;
+	
+	public TraceFormatter(SimulationContext context) {
+		super(context);
 		name = "Output module";
+		
+		double maxDuration = 60;
+		if (context.parameters.containsKey("COALESCE_MAX_DURATION")) {
+			try {
+				maxDuration = Double.valueOf(context.parameters.getProperty("COALESCE_MAX_DURATION"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter COALESCE_MAX_DURATION: " + e.getMessage());
+			}
+		}
+		
+		if (context.parameters.containsKey("COALESCE_TOLERANCE")) {
+			try {
+				double tolerance = Double.valueOf(context.parameters.getProperty("COALESCE_TOLERANCE"));
+				coalescer = new EventCoalescer(tolerance, maxDuration, new EventSink() {
+					public void addEvent(Event event) {
+						pendingEvents.add(event);
+					}
+				});
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter COALESCE_TOLERANCE: " + e.getMessage());
+			}
+		}
 	}
 	
 	public void init() {
 		// nothing to do
 	}
+	
 	public void next() {
-		// nothing to do
+		// nodes generate events which start at most one sample step before the current 
+		// simulation time, all older events can be written to the trace
+		// (except for events after an event which is kept back for merging)
+		double time = context.time - context.step;
+		if (coalescer!=null) {
+			// events which cannot be extended anymore are not kept back
+			coalescer.release(time);
+			time = Math.min(time, coalescer.getEarliestTime());
+		}
+		flush(time);
 	};
 	
 	public void addNode(double time, MobileNode node) {
@@ -107,6 +160,44 @@ public abstract class TraceFormatter extends Module {
 		// nothing to do
 	};
 	
-	public abstract void finish();
+	public void addEvent(Event event) {
+		if (coalescer!=null) coalescer.addEvent(event);
+		else pendingEvents.add(event);
+	}
+	
+	/**
+	 * Writes all pending events which start before the given time ordered by their start time.
+	 * Events with the same start time are written in the order they have been generated.
+	 * @param time Events starting before this time are written
+	 */
+	protected void flush(double time) {
+		
+		// stable sort, keeps the order of events with the same start time
+		Collections.sort(pendingEvents, startTimeComparator);
+		
+		int index = 0;
+		while (index<pendingEvents.size() && pendingEvents.get(index).time<time) {
+			write(pendingEvents.get(index));
+			index++;
+		}
+		
+		// remove written events
+		pendingEvents.subList(0, index).clear();
+	}
+	
+	/**
+	 * Writes the next event to the trace. Events are passed to this method ordered by their start time.
+	 * @param event Next event
+	 */
+	protected abstract void write(Event event);
+	
+	/**
+	 * Writes all remaining events to the trace. Subclasses have to call this method
+	 * before closing their output files.
+	 */
+	public void finish() {
+		if (coalescer!=null) coalescer.flush();
+		flush(Double.POSITIVE_INFINITY);
+	}
 	
 }
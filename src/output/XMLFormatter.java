@@ -31,7 +31,6 @@
 package output;
 
 import java.io.*;
-import java.util.*;
 
 import simulator.*;
 import event.*;
@@ -43,28 +42,47 @@ import event.*;
  */
 public class XMLFormatter extends TraceFormatter {
 
+	/** events ordered by their start time (traces are grouped by node and can only be written at the end) */
+	EventStore events = new EventStore();
+	
+	
+	/**
+	 * Creates a new XMLFormatter
+	 * @param context Simulation which uses this formatter
+	 */
+	public XMLFormatter(SimulationContext context) {
+		super(context);
+	}
+	
+	protected void write(Event event) {
+		events.add(event);
+	}
 	
 	public void finish() {
 		
+		// collect remaining events
+		super.finish();
+		
 		// sort all events by node identifier and start time
-		Collections.sort(Simulator.events, new EventComparatorByNodeIdByStartTime());
+		int[] order = events.sortByNodeIdByStartTime();
 		
 		try {
 			
-			BufferedWriter writer = new BufferedWriter(new FileWriter(new File(Simulator.outputDirectory + "/trace.xml")));
+			BufferedWriter writer = new BufferedWriter(new FileWriter(new File(context.outputDirectory + "/trace.xml")));
 			
 			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
 			writer.write("<traces xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:noNamespaceSchemaLocation=\"traces.xsd\">\n");
 			
 			// output paths of all nodes
-			Iterator<Event> it = Simulator.events.iterator();
 			int lastNodeId = -1;
 			
-			while (it.hasNext()) {
+			for (int i=0; i<order.length; i++) {
 				
-				Event event = it.next();
+				int event = order[i];
+				int nodeId = events.getNodeId(event);
+				int type = events.getType(event);
 				
-				if (event.node.id!=lastNodeId) {
+				if (nodeId!=lastNodeId) {
 					
 					if (lastNodeId!=-1) {
 						writer.write("    </events>\n");
@@ -72,55 +90,53 @@ public class XMLFormatter extends TraceFormatter {
 					}
 					
 					// next node
-					writer.write("  <node id=\"" + event.node.id + "\">\n");
+					writer.write("  <node id=\"" + nodeId + "\">\n");
 					writer.write("    <events>\n");
 	 			
-					lastNodeId = event.node.id;
+					lastNodeId = nodeId;
 				}
 				
-				if (event.type==Event.MOVE) {
-					Move temp = (Move) event;
+				if (type==Event.MOVE) {
 					
 					writer.write("      <move>\n");
 					writer.write("        <start>\n");
-					writer.write("          <time>" + String.format("%.2f",temp.time) + "</time>\n");
-					writer.write("          <x>" + String.format("%.2f",temp.x) + "</x>\n");
-					writer.write("          <y>" + String.format("%.2f",temp.y) + "</y>\n");
+					writer.write("          <time>" + String.format("%.2f", events.getTime(event)) + "</time>\n");
+					writer.write("          <x>" + String.format("%.2f", events.getX(event)) + "</x>\n");
+					writer.write("          <y>" + String.format("%.2f", events.getY(event)) + "</y>\n");
 					writer.write("        </start>\n");
 					writer.write("        <stop>\n");
-					writer.write("          <time>" + String.format("%.2f", temp.time + temp.duration) + "</time>\n");
-					writer.write("          <x>" + String.format("%.2f", temp.moveToX) + "</x>\n");
-					writer.write("          <y>" + String.format("%.2f",temp.moveToY) + "</y>\n");
+					writer.write("          <time>" + String.format("%.2f", events.getTime(event) + events.getDuration(event)) + "</time>\n");
+					writer.write("          <x>" + String.format("%.2f", events.getMoveToX(event)) + "</x>\n");
+					writer.write("          <y>" + String.format("%.2f", events.getMoveToY(event)) + "</y>\n");
 					writer.write("        </stop>\n");
 					writer.write("      </move>\n");
 					
 					
-				} else if (event.type==Event.PAUSE) {
-					Pause temp = (Pause) event;
+				} else if (type==Event.PAUSE) {
 					
 					writer.write("      <pause>\n");
-					writer.write("        <time>" + String.format("%.2f", temp.time) + "</time>\n");
-					writer.write("        <x>" + String.format("%.2f", temp.x) + "</x>\n");
-					writer.write("        <y>" + String.format("%.2f", temp.y) + "</y>\n");
-					writer.write("        <duration>" + String.format("%.2f", temp.duration)  + "</duration>\n");
+					writer.write("        <time>" + String.format("%.2f", events.getTime(event)) + "</time>\n");
+					writer.write("        <x>" + String.format("%.2f", events.getX(event)) + "</x>\n");
+					writer.write("        <y>" + String.format("%.2f", events.getY(event)) + "</y>\n");
+					writer.write("        <duration>" + String.format("%.2f", events.getDuration(event))  + "</duration>\n");
 					writer.write("      </pause>\n");	
 					
 					
-				}  else if (event.type==Event.JOIN) {
+				}  else if (type==Event.JOIN) {
 					
 					writer.write("      <join>\n");
-					writer.write("        <time>" + String.format("%.2f", event.time) + "</time>\n");
-					writer.write("        <x>" + String.format("%.2f", event.x) + "</x>\n");
-					writer.write("        <y>" + String.format("%.2f", event.y) + "</y>\n");
+					writer.write("        <time>" + String.format("%.2f", events.getTime(event)) + "</time>\n");
+					writer.write("        <x>" + String.format("%.2f", events.getX(event)) + "</x>\n");
+					writer.write("        <y>" + String.format("%.2f", events.getY(event)) + "</y>\n");
 					writer.write("      </join>\n");
 	 				
 					
-				}  else if (event.type==Event.LEAVE) {
+				}  else if (type==Event.LEAVE) {
 					
 					writer.write("      <leave>\n");
-					writer.write("        <time>" + String.format("%.2f", event.time) + "</time>\n");
-					writer.write("        <x>" + String.format("%.2f", event.x) + "</x>\n");
-					writer.write("        <y>" + String.format("%.2f", event.y) + "</y>\n");
+					writer.write("        <time>" + String.format("%.2f", events.getTime(event)) + "</time>\n");
+					writer.write("        <x>" + String.format("%.2f", events.getX(event)) + "</x>\n");
+					writer.write("        <y>" + String.format("%.2f", events.getY(event)) + "</y>\n");
 					writer.write("      </leave>\n");
 	 				
 				}
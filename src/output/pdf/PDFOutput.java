@@ -202,19 +202,8 @@ public class PDFOutput {
 			Iterator<RoadEdge> it = path.getPathIterator();
 			while (it.hasNext()) {
 				RoadEdge edge = it.next();
-				RoadNode nodeA = edge.getStartNode();
-				RoadNode nodeB = edge.getEndNode();
-				
-				if (edge.segments==null) {
-					
-					drawLine(new Line(nodeA.x, nodeA.y, nodeB.x, nodeB.y), color, 0.5f);
-					
-				} else {
-					Iterator<Line> it2 = edge.segments.iterator();
-					while (it2.hasNext()) {
-						drawLine(it2.next(), color, 0.5f);
-					}
-					
+				for (int i=1; i<edge.getPointCount(); i++) {
+					drawLine(new Line(edge.getPointX(i-1), edge.getPointY(i-1), edge.getPointX(i), edge.getPointY(i)), color, 0.5f);
 				}
 			}
 	        
@@ -364,16 +353,8 @@ public class PDFOutput {
 			}
 			
 			
-			if (edge.segments==null) {
-				
-				drawLine(new Line(nodeA.x, nodeA.y, nodeB.x, nodeB.y), color, 0.5f);
-				
-			} else {
-				Iterator<Line> it = edge.segments.iterator();
-				while (it.hasNext()) {
-					drawLine(it.next(), color, 0.5f);
-				}
-				
+			for (int i=1; i<edge.getPointCount(); i++) {
+				drawLine(new Line(edge.getPointX(i-1), edge.getPointY(i-1), edge.getPointX(i), edge.getPointY(i)), color, 0.5f);
 			}
 			
 			
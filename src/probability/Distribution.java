@@ -31,6 +31,8 @@
 
 package probability;
 
+import java.util.*;
+
 /** 
  * Distribution is an interface for the probability distribution of a random variable.
  */
@@ -74,4 +76,11 @@ public interface Distribution {
 	 */
 	public abstract double nextValue();
 	
+	/**
+	 * Returns the next random variable drawn from the given random number generator
+	 * @param rng random number generator
+	 * @return value of random variable x
+	 */
+	public abstract double nextValue(Random rng);
+	
 }
@@ -0,0 +1,91 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package probability;
+
+import java.util.*;
+
+/**
+ * RandomStream is a random number generator which produces the same sequence as java.util.Random, 
+ * but gives access to its internal state. This allows to save the state of a simulation and to
+ * continue the same sequence of random numbers later (see Snapshot).
+ * @author psommer
+ *
+ */
+public class RandomStream extends Random {
+
+	private static final long serialVersionUID = 1L;
+	
+	/** multiplier of the linear congruential generator (as used by java.util.Random) */
+	static final long multiplier = 0x5DEECE66DL;
+	/** increment of the linear congruential generator */
+	static final long addend = 0xBL;
+	/** 48-bit mask */
+	static final long mask = (1L << 48) - 1;
+	
+	/** current state of the generator (set by the constructor of java.util.Random via setSeed()) */
+	private long state;
+	
+	/**
+	 * Creates a new random number generator
+	 * @param seed Seed value
+	 */
+	public RandomStream(long seed) {
+		super(seed);
+	}
+	
+	public synchronized void setSeed(long seed) {
+		super.setSeed(seed);
+		state = (seed ^ multiplier) & mask;
+	}
+	
+	protected int next(int bits) {
+		state = (state * multiplier + addend) & mask;
+		return (int)(state >>> (48 - bits));
+	}
+	
+	/**
+	 * Returns the internal state of the generator
+	 * @return 48-bit state
+	 */
+	public long getState() {
+		return state;
+	}
+	
+	/**
+	 * Sets the internal state of the generator (as returned by getState())
+	 * @param state 48-bit state
+	 */
+	public void setState(long state) {
+		this.state = state & mask;
+	}
+	
+}
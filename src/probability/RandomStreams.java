@@ -0,0 +1,71 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package probability;
+
+/**
+ * RandomStreams derives independent random number generators from the simulation seed.
+ * Each stream is identified by a component (e.g. nodes or intersections) and an index within this component
+ * (e.g. the node identifier). The seed of the stream is calculated by the SplitMix64 mixing function, such that 
+ * streams with neighboring identifiers are uncorrelated. The random numbers drawn by a component are thus 
+ * independent of the order in which the components are updated.
+ * @author psommer
+ *
+ */
+public class RandomStreams {
+
+	/** streams of the mobile nodes */
+	public static final int NODE = 1;
+	
+	/**
+	 * Creates the random number generator for the specified stream
+	 * @param seed Simulation seed
+	 * @param component Component of the stream (e.g. NODE)
+	 * @param index Index of the stream within the component
+	 * @return Random number generator
+	 */
+	public static RandomStream create(long seed, int component, long index) {
+		return new RandomStream(mix(mix(mix(seed) + component) + index));
+	}
+	
+	/**
+	 * SplitMix64 mixing function
+	 * @param z Value to mix
+	 * @return Mixed value
+	 */
+	static long mix(long z) {
+		z += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+}
@@ -72,6 +72,10 @@ public class UniformDistribution implements Distribution {
 	}
 	
 	public double nextValue() {
+		return nextValue(rng);
+	}
+	
+	public double nextValue(Random rng) {
 		return min + rng.nextDouble()*(max-min);
 	}
 	
@@ -42,6 +42,16 @@ public abstract class Module {
 
 	/** Module name */
 	public String name = "";
+	/** simulation which uses this module */
+	protected SimulationContext context = null;
+	
+	/**
+	 * Creates a new module
+	 * @param context Simulation which uses this module
+	 */
+	public Module(SimulationContext context) {
+		this.context = context;
+	}
 	
 	/**
 	 * Initializes the module
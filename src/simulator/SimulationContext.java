@@ -0,0 +1,343 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package simulator;
+
+
+import java.util.*;
+
+import event.Event;
+import event.EventSink;
+import gui.GUI;
+import output.*;
+import mobility.*;
+import mobility.gis.GISModel;
+import mobility.gis.LandscapeModel;
+import mobility.manhattan.ManhattanModel;
+import mobility.mmts.MMTSModel;
+import mobility.rwp.RandomWaypointModel;
+import mobility.fixed.FixedModel;
+import model.*;
+
+
+/**
+ * SimulationContext holds the state of a single simulation run. The context is passed to the mobility model,
+ * the modules and the nodes, such that several independent simulations can run in the same process.
+ * @author psommer
+ *
+ */
+public class SimulationContext {
+
+
+
+	
+	/** Mobility model used for the simulation of node mobility */
+	public MobilityModel mobilityModel = null;
+	
+	/** list modules attached to the simulator */
+	LinkedList<Module> modules = new LinkedList<Module>();
+	/** list of consumers for the node events */
+	LinkedList<EventSink> eventSinks = new LinkedList<EventSink>();
+	
+	/** simulation parameters */
+	public Properties parameters = null;
+	
+	/** directory for input files */
+	public String inputDirectory = "";
+	/** directory for output files */
+	public String outputDirectory = "";
+	
+	/** simulation duration */
+	public double duration = 0;
+	/** current simulation time */
+	public double time = 0;
+	/** size of a sample step */
+	public double step = 1.0;
+	/** number of samples */
+	public int samples = 0;
+	
+	/** number of (unique) nodes in the simulation */
+	public int uniqueNodes = 0;
+	/** average number of nodes */
+	public double avgNodes = 0;
+	/** average node participation time */
+	public double avgNodeTime = 0;
+	/** number of nodes joined the simulation area */
+	public int nodeJoins = 0;
+	
+	/** nodes participating in the simulation */
+	public ArrayList<MobileNode> nodes = new ArrayList<MobileNode>();
+	/** graph representing the neighborhood relations between nodes */
+	public Graph neighborhoodGraph = new Graph();
+	
+	/** seed for the random number generators */
+	public long seed = 0;
+	
+	
+	/** size of the simulation square area */
+	public int size = 0;
+	
+	/** landscape model loaded in advance and shared with other simulations (read-only, the GIS model works on a copy) */
+	public LandscapeModel landscape = null;
+	/** print the progress of the simulation */
+	public boolean verbose = true;
+	/** suffix the file of the warm-up snapshot with a hash of the snapshot key (see Snapshot.getFile()) */
+	public boolean snapshotPerKey = false;
+	
+	
+	/**
+	 * Creates a new simulation with the given parameters. The mobility model and the modules 
+	 * are created according to the parameters.
+	 * @param parameters Simulation parameters (KEY=VALUE pairs)
+	 */
+	public SimulationContext(Properties parameters) {
+		
+		this.parameters = parameters;
+		
+		// input directory
+		if (parameters.containsKey("INPUT_DIRECTORY")) {
+			try {
+				 inputDirectory = parameters.getProperty("INPUT_DIRECTORY");
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter INPUT_DIRECTORY: " + e.getMessage());
+			}
+		}
+		// output directory
+		if (parameters.containsKey("OUTPUT_DIRECTORY")) {
+			try {
+				 outputDirectory = parameters.getProperty("OUTPUT_DIRECTORY");
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter OUTPUT_DIRECTORY: " + e.getMessage());
+			}
+		} else {
+			outputDirectory = System.getProperty("user.dir");
+		}
+		
+			
+		if (parameters.containsKey("SIMULATION_SIZE")) {
+			try {
+				size = Integer.valueOf(parameters.getProperty("SIMULATION_SIZE"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter SIMULATION_SIZE: " + e.getMessage());
+			}
+		}
+		
+		
+		if (parameters.containsKey("TIME")) {
+			try {
+				duration = Double.valueOf(parameters.getProperty("TIME"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter TIME: " + e.getMessage());
+			}
+		}
+
+		
+		if (parameters.containsKey("SEED")) {
+			try {
+				seed = Long.valueOf(parameters.getProperty("SEED"));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter SEED: " + e.getMessage());
+			}
+		}
+		
+		
+		// initialize mobility model
+		if (parameters.containsKey("MODEL")) {
+			try {
+				String model = parameters.getProperty("MODEL");
+				if (model.equals("RWP")) {
+					mobilityModel = new RandomWaypointModel(this);
+				} else if (model.equals("MN")) {
+					mobilityModel = new ManhattanModel(this);
+		 		} else if (model.equals("GIS")) {
+		 			mobilityModel = new GISModel(this);
+				} else if (model.equals("MMTS")) {
+					mobilityModel = new MMTSModel(this);
+				} else if (model.equals("FIXED")) {
+					mobilityModel = new FixedModel(this);
+				}
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter MODEL: " + e.getMessage());
+			}
+		} else {
+			System.err.println("No mobility model specified. Use the MODEL parameter to specify a mobility model.");
+		}
+		
+		
+		// initialize traces output module
+		
+		if (parameters.containsKey("FORMAT")) {
+			try {
+				String output = parameters.getProperty("FORMAT");
+				TraceFormatter formatter = null;
+				if (output.equals("QUALNET")) formatter = new QualnetFormatter(this);
+				else if (output.equals("NAM")) formatter = new NAMFormatter(this);
+				else if (output.equals("NS-2")) formatter = new NS2Formatter(this);
+				else if (output.equals("XML")) formatter = new XMLFormatter(this);
+				else if (output.equals("PDF")) formatter = new PDFFormatter(this);
+				
+				if (formatter!=null) {
+					modules.add(formatter);
+					// the formatter consumes the node events while the simulation is running
+					addEventSink(formatter);
+				}
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter FORMAT: " + e.getMessage());
+			}
+		}
+		
+		
+		// graphical user interface
+		if (parameters.containsKey("GUI")) {
+			try {
+				boolean enableGUI = (1==Integer.valueOf(parameters.getProperty("GUI")));
+				// initialize graphical user interface (GUI)
+				if (enableGUI) modules.add(new GUI(this));
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter GUI: " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Performs the simulation run
+	 */
+	public void run() {
+		
+		// simulation time settings
+		time = 0;
+		samples = (int)Math.floor((duration)/step)+1;
+		
+				
+		// initialize simulation
+		mobilityModel.init();
+		
+		// initialize all modules
+		Iterator<Module> moduleIterator = modules.iterator();
+		while (moduleIterator.hasNext()){
+			Module module = moduleIterator.next();
+			//System.out.println("Initializing module: " + module.name);
+			module.init();
+		}
+		
+		
+		// perform simulation
+		for (int sample=0; sample<samples; sample++) {
+			if (verbose) System.out.println("Sample point: " + sample + "/" + samples + " time=" + time);
+			
+			// update node positions
+			mobilityModel.next();
+			
+			// modules
+			moduleIterator = modules.iterator();
+			while (moduleIterator.hasNext()){
+				Module module = moduleIterator.next();
+				module.next();
+			}
+					
+			// count average number of nodes
+			avgNodes += nodes.size();
+
+			// update simulation time
+			time+=step;
+			
+		}
+		
+		
+		// simulation finished
+		mobilityModel.finish();
+		
+
+		// calculate average time node is in the simulation area
+		avgNodeTime=1.00*avgNodeTime/nodeJoins;
+		avgNodes = 1.00*avgNodes/samples;
+		
+		
+		// finish all modules
+		moduleIterator = modules.iterator();
+		while (moduleIterator.hasNext()){
+			Module module = moduleIterator.next();
+			//System.out.println("Finish module: " + module.name);
+			module.finish();
+		}
+		
+	}
+	
+	public void addNode(double time, MobileNode node) {
+		// add a new node to the simulation
+		nodes.add(node);
+
+		// update all modules
+		Iterator<Module> moduleIterator = modules.iterator();
+		while (moduleIterator.hasNext()){
+			Module module = moduleIterator.next();
+			module.addNode(time, node);
+		}
+		nodeJoins++;		
+		
+	}
+	
+	public void removeNode(double time, MobileNode node) {
+		// remove node from the simulation
+		nodes.remove(node);
+		
+		// update all modules
+		Iterator<Module> moduleIterator = modules.iterator();
+		while (moduleIterator.hasNext()){
+			Module module = moduleIterator.next();
+			module.removeNode(time, node);
+		}
+		
+		// update average time node is in simulation area
+		avgNodeTime+=node.leaveTime-node.joinTime;
+	}
+	
+	/**
+	 * Registers a consumer for the events generated by the nodes
+	 * @param sink Event sink
+	 */
+	public void addEventSink(EventSink sink) {
+		eventSinks.add(sink);
+	}
+	
+	/**
+	 * Publishes a node event to all registered event sinks
+	 * @param event Event generated by a node
+	 */
+	public void addEvent(Event event) {
+		Iterator<EventSink> it = eventSinks.iterator();
+		while (it.hasNext()) {
+			it.next().addEvent(event);
+		}
+	}
+	
+	
+}
@@ -29,78 +29,20 @@
 * 
 */
 
-
 package simulator;
 
 
 import java.util.*;
 
-import event.Event;
-import gui.GUI;
-import output.*;
-import mobility.*;
-import mobility.gis.GISModel;
-import mobility.manhattan.ManhattanModel;
-import mobility.mmts.MMTSModel;
-import mobility.rwp.RandomWaypointModel;
-import mobility.fixed.FixedModel;
-import model.*;
-
 
+/**
+ * Simulator is the command line interface of the simulation framework.
+ * It runs a single simulation with the parameters given as comma-separated KEY=VALUE pairs.
+ * @author psommer
+ *
+ */
 public class Simulator {
 
-	
-	/** Mobility model used for the simulation of node mobility */
-	public static MobilityModel mobilityModel = null;
-	
-	/** list modules attached to the simulator */
-	static LinkedList<Module> modules = new LinkedList<Module>();
-	
-	/** random number generator */
-	public static Random rng = new Random();
-	
-	/** simulation parameters */
-	public static Properties parameters = new Properties();
-	
-	/** directory for input files */
-	public static String inputDirectory = "";
-	/** directory for output files */
-	public static String outputDirectory = "";
-	
-	/** simulation duration */
-	public static double duration = 0;
-	/** current simulation time */
-	public static double time = 0;
-	/** size of a sample step */
-	public static double step = 1.0;
-	/** number of samples */
-	public static int samples = 0;
-	
-	/** number of (unique) nodes in the simulation */
-	public static int uniqueNodes = 0;
-	/** average number of nodes */
-	public static double avgNodes = 0;
-	/** average node participation time */
-	public static double avgNodeTime = 0;
-	/** number of nodes joined the simulation area */
-	public static int nodeJoins = 0;
-	
-	/** nodes participating in the simulation */
-	public static ArrayList<MobileNode> nodes = new ArrayList<MobileNode>();
-	/** node events */
-	public static LinkedList<Event> events = new LinkedList<Event>();
-	/** graph representing the neighborhood relations between nodes */
-	public static Graph neighborhoodGraph = new Graph();
-	
-	/** seed for the random number generators */
-	public static long seed = 0;
-	
-	
-	/** size of the simulation square area */
-	public static int size = 0;
-	
-	
-	
 	public static void main(String[] args) {
 
 		
@@ -117,6 +59,7 @@ public class Simulator {
 			return;
 		}
 		
+		Properties parameters = new Properties();
 		String[] pairs = args[0].split(",");
 		for (int i=0; i<pairs.length;i++) {
 			String[] parts = pairs[i].split("=");
@@ -124,200 +67,10 @@ public class Simulator {
 		}
 		
 		
-		// input directory
-		if (parameters.containsKey("INPUT_DIRECTORY")) {
-			try {
-				 inputDirectory = parameters.getProperty("INPUT_DIRECTORY");
-			} catch (Exception e) {
-				System.err.println("Error parsing parameter INPUT_DIRECTORY: " + e.getMessage());
-			}
-		}
-		// output directory
-		if (parameters.containsKey("OUTPUT_DIRECTORY")) {
-			try {
-				 outputDirectory = parameters.getProperty("OUTPUT_DIRECTORY");
-			} catch (Exception e) {
-				System.err.println("Error parsing parameter OUTPUT_DIRECTORY: " + e.getMessage());
-			}
-		} else {
-			outputDirectory = System.getProperty("user.dir");
-		}
-		
-			
-		if (parameters.containsKey("SIMULATION_SIZE")) {
-			try {
-				size = Integer.valueOf(parameters.getProperty("SIMULATION_SIZE"));
-			} catch (Exception e) {
-				System.err.println("Error parsing parameter SIMULATION_SIZE: " + e.getMessage());
-			}
-		}
-		
-		
-		if (parameters.containsKey("TIME")) {
-			try {
-				duration = Double.valueOf(parameters.getProperty("TIME"));
-			} catch (Exception e) {
-				System.err.println("Error parsing parameter TIME: " + e.getMessage());
-			}
-		}
-
-		
-		if (parameters.containsKey("SEED")) {
-			try {
-				seed = Long.valueOf(parameters.getProperty("SEED"));
-			} catch (Exception e) {
-				System.err.println("Error parsing parameter SEED: " + e.getMessage());
-			}
-		}
-		
-	
-		// initialize random number generator
-		rng = new Random(seed);
-		
-		// initialize mobility model
-		if (parameters.containsKey("MODEL")) {
-			try {
-				String model = parameters.getProperty("MODEL");
-				if (model.equals("RWP")) {
-					mobilityModel = new RandomWaypointModel();
-				} else if (model.equals("MN")) {
-					mobilityModel = new ManhattanModel();
-		 		} else if (model.equals("GIS")) {
-		 			mobilityModel = new GISModel();
-				} else if (model.equals("MMTS")) {
-					mobilityModel = new MMTSModel();
-				} else if (model.equals("FIXED")) {
-					mobilityModel = new FixedModel();
-				}
-			} catch (Exception e) {
-				System.err.println("Error parsing parameter MODEL: " + e.getMessage());
-			}
-		} else {
-			System.err.println("No mobility model specified. Use the MODEL parameter to specify a mobility model.");
-		}
-		
-		
-		// initialize traces output module
-		
-		if (parameters.containsKey("FORMAT")) {
-			try {
-				String output = parameters.getProperty("FORMAT");
-				if (output.equals("QUALNET")) modules.add(new QualnetFormatter());
-				else if (output.equals("NAM")) modules.add(new NAMFormatter());
-				else if (output.equals("NS-2")) modules.add(new NS2Formatter());
-				else if (output.equals("XML")) modules.add(new XMLFormatter());
-				else if (output.equals("PDF")) modules.add(new PDFFormatter());
-			} catch (Exception e) {
-				System.err.println("Error parsing parameter FORMAT: " + e.getMessage());
-			}
-		}
-		
-		
-		// graphical user interface
-		if (parameters.containsKey("GUI")) {
-			try {
-				boolean enableGUI = (1==Integer.valueOf(parameters.getProperty("GUI")));
-				// initialize graphical user interface (GUI)
-				if (enableGUI) modules.add(new GUI());
-			} catch (Exception e) {
-				System.err.println("Error parsing parameter GUI: " + e.getMessage());
-			}
-		}
-		
-		
-		
-		// simulation time settings
-		time = 0;
-		samples = (int)Math.floor((duration)/step)+1;
-		
-				
-		// initialize simulation
-		mobilityModel.init();
-		
-		// initialize all modules
-		Iterator<Module> moduleIterator = modules.iterator();
-		while (moduleIterator.hasNext()){
-			Module module = moduleIterator.next();
-			//System.out.println("Initializing module: " + module.name);
-			module.init();
-		}
-		
-		
-		// perform simulation
-		for (int sample=0; sample<samples; sample++) {
-			System.out.println("Sample point: " + sample + "/" + samples + " time=" + time);
-			
-			// update node positions
-			mobilityModel.next();
-			
-			// modules
-			moduleIterator = modules.iterator();
-			while (moduleIterator.hasNext()){
-				Module module = moduleIterator.next();
-				module.next();
-			}
-					
-			// count average number of nodes
-			avgNodes += nodes.size();
-
-			// update simulation time
-			time+=step;
-			
-		}
-		
-		
-		// simulation finished
-		mobilityModel.finish();
-		
-
-		// calculate average time node is in the simulation area
-		avgNodeTime=1.00*avgNodeTime/nodeJoins;
-		avgNodes = 1.00*avgNodes/samples;
-		
-		
-		// finish all modules
-		moduleIterator = modules.iterator();
-		while (moduleIterator.hasNext()){
-			Module module = moduleIterator.next();
-			//System.out.println("Finish module: " + module.name);
-			module.finish();
-		}
-		
-	}
-
-	
-	public static void addNode(double time, MobileNode node) {
-		// add a new node to the simulation
-		nodes.add(node);
-
-		// update all modules
-		Iterator<Module> moduleIterator = modules.iterator();
-		while (moduleIterator.hasNext()){
-			Module module = moduleIterator.next();
-			module.addNode(time, node);
-		}
-		nodeJoins++;		
-		
-	}
-	
-	public static void removeNode(double time, MobileNode node) {
-		// remove node from the simulation
-		nodes.remove(node);
-		
-		// update all modules
-		Iterator<Module> moduleIterator = modules.iterator();
-		while (moduleIterator.hasNext()){
-			Module module = moduleIterator.next();
-			module.removeNode(time, node);
-		}
+		// perform the simulation
+		SimulationContext context = new SimulationContext(parameters);
+		context.run();
 		
-		// update average time node is in simulation area
-		avgNodeTime+=node.leaveTime-node.joinTime;
-	}
-	
-	public static void addEvent(Event event) {
-		events.add(event);
 	}
 	
-	
 }
@@ -0,0 +1,195 @@
+/* Copyright (c) 2007-2009, Computer Engineering and Networks Laboratory (TIK), ETH Zurich.
+*  All rights reserved.
+*
+*  Redistribution and use in source and binary forms, with or without
+*  modification, are permitted provided that the following conditions
+*  are met:
+*
+*  1. Redistributions of source code must retain the above copyright
+*     notice, this list of conditions and the following disclaimer.
+*  2. Redistributions in binary form must reproduce the above copyright
+*     notice, this list of conditions and the following disclaimer in the
+*     documentation and/or other materials provided with the distribution.
+*  3. Neither the name of the copyright holders nor the names of
+*     contributors may be used to endorse or promote products derived
+*     from this software without specific prior written permission.
+*
+*  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS `AS IS'
+*  AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+*  IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+*  ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS
+*  BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+*  CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, LOSS OF USE, DATA,
+*  OR PROFITS) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+*  CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+*  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+*  THE POSSIBILITY OF SUCH DAMAGE.
+*
+*  @author Philipp Sommer <phsommer@users.sourceforge.net>
+* 
+*/
+
+package simulator;
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import mobility.gis.*;
+
+
+/**
+ * Sweep runs a batch of simulations for a grid of parameter values.
+ * The parameters are given as comma-separated KEY=VALUE pairs like for the Simulator, 
+ * where a value may list several alternatives separated by '|'. A simulation is run for 
+ * each combination of the values. Road networks are loaded once per input directory and 
+ * shared between the runs. Each run writes its traces to a subdirectory of the output
+ * directory named after the varied parameters. The warm-up snapshot (WARMUP_SNAPSHOT) is stored in a 
+ * separate file for each warm-up configuration, suffixed with a hash of the snapshot key. Runs with the 
+ * same warm-up share the file: the first run writes it, while the other runs wait and then restore it.
+ * @author psommer
+ *
+ */
+public class Sweep {
+
+	/**
+	 * Runs a single simulation of the sweep
+	 */
+	static class Run implements Runnable {
+		
+		/** simulation parameters */
+		Properties parameters = null;
+		/** shared landscape model (GIS model only) */
+		LandscapeModel landscape = null;
+		
+		Run(Properties parameters, LandscapeModel landscape) {
+			this.parameters = parameters;
+			this.landscape = landscape;
+		}
+		
+		public void run() {
+			try {
+				System.out.println("Starting run: " + parameters.getProperty("OUTPUT_DIRECTORY"));
+				SimulationContext context = new SimulationContext(parameters);
+				context.landscape = landscape;
+				context.verbose = false;
+				context.snapshotPerKey = true;
+				context.run();
+				System.out.println("Finished run: " + parameters.getProperty("OUTPUT_DIRECTORY"));
+			} catch (Exception e) {
+				System.err.println("Error in run " + parameters.getProperty("OUTPUT_DIRECTORY") + ": " + e.getMessage());
+			}
+		}
+	}
+	
+	
+	/**
+	 * Converts a parameter value into a part of a file name (path separators are replaced)
+	 * @param value Parameter value
+	 * @return Value without path separators
+	 */
+	static String getNameComponent(String value) {
+		return value.replace(File.separatorChar, '_').replace('/', '_').replace(':', '_');
+	}
+	
+	public static void main(String[] args) {
+		
+		// parse input parameters
+		if (args.length<1) {
+			System.err.println("No parameters specifed.");
+			return;
+		}
+		
+		LinkedHashMap<String, String[]> grid = new LinkedHashMap<String, String[]>();
+		String[] pairs = args[0].split(",");
+		for (int i=0; i<pairs.length;i++) {
+			String[] parts = pairs[i].split("=");
+			grid.put(parts[0], parts[1].split("\\|"));
+		}
+		
+		// number of simultaneous runs
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (grid.containsKey("SWEEP_THREADS")) {
+			try {
+				threads = Integer.valueOf(grid.remove("SWEEP_THREADS")[0]);
+			} catch (Exception e) {
+				System.err.println("Error parsing parameter SWEEP_THREADS: " + e.getMessage());
+			}
+		}
+		
+		// output directory
+		String outputDirectory = System.getProperty("user.dir");
+		if (grid.containsKey("OUTPUT_DIRECTORY")) {
+			outputDirectory = grid.remove("OUTPUT_DIRECTORY")[0];
+		}
+		
+		// generate all parameter combinations
+		LinkedList<Properties> runs = new LinkedList<Properties>();
+		runs.add(new Properties());
+		
+		Iterator<String> it = grid.keySet().iterator();
+		while (it.hasNext()) {
+			String key = it.next();
+			String[] values = grid.get(key);
+			LinkedList<Properties> combinations = new LinkedList<Properties>();
+			
+			Iterator<Properties> runIt = runs.iterator();
+			while (runIt.hasNext()) {
+				Properties run = runIt.next();
+				for (int i=0; i<values.length; i++) {
+					Properties combination = new Properties();
+					combination.putAll(run);
+					combination.setProperty(key, values[i]);
+					// name the run after the varied parameters
+					String name = run.getProperty("OUTPUT_DIRECTORY", "");
+					if (values.length>1) name = (name.length()==0 ? "" : name + "_") + key + "=" + getNameComponent(values[i]);
+					combination.setProperty("OUTPUT_DIRECTORY", name);
+					combinations.add(combination);
+				}
+			}
+			
+			runs = combinations;
+		}
+		
+		System.out.println("Parameter sweep with " + runs.size() + " runs on " + threads + " threads");
+		
+		// load shared landscape models and create output directories
+		HashMap<String, LandscapeModel> landscapes = new HashMap<String, LandscapeModel>();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		
+		Iterator<Properties> runIt = runs.iterator();
+		while (runIt.hasNext()) {
+			
+			Properties run = runIt.next();
+			
+			String name = run.getProperty("OUTPUT_DIRECTORY");
+			if (name.length()==0) name = "run";
+			File directory = new File(outputDirectory, name);
+			directory.mkdirs();
+			run.setProperty("OUTPUT_DIRECTORY", directory.getPath());
+			
+			LandscapeModel landscape = null;
+			if ("GIS".equals(run.getProperty("MODEL"))) {
+				String inputDirectory = run.getProperty("INPUT_DIRECTORY", "");
+				landscape = landscapes.get(inputDirectory);
+				if (landscape==null) {
+					landscape = GISModel.loadLandscape(inputDirectory);
+					landscapes.put(inputDirectory, landscape);
+				}
+			}
+			
+			pool.execute(new Run(run, landscape));
+		}
+		
+		// wait for all runs to complete
+		pool.shutdown();
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			System.err.println("Parameter sweep interrupted: " + e.getMessage());
+		}
+		
+	}
+	
+}